@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2020 Robert Sauter
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.isotes.vs.utils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Inputs for the benchmarks: the Hilo test projects and synthetically generated large solutions and projects */
+public class BenchmarkData {
+	public static Path hilo(String relative) {
+		Path path = Paths.get(System.getProperty("vs-utils.test-projects", "build/test-projects"), "Hilo2015", relative);
+		if (!Files.isReadable(path)) {
+			throw new IllegalArgumentException("File not readable: " + path + ". Make sure Gradle task 'downloadTestResources' has been executed");
+		}
+		return path;
+	}
+
+	public static Path tempDirectory() {
+		try {
+			Path dir = Files.createTempDirectory("vs-utils-jmh");
+			dir.toFile().deleteOnExit();
+			return dir;
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public static Path write(Path path, String content) {
+		try {
+			Files.createDirectories(path.getParent());
+			Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+			path.toFile().deleteOnExit();
+			return path;
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public static String guid(int i) {
+		return String.format("{%08X-0000-4000-8000-%012X}", i, i);
+	}
+
+	public static List<String> configurations(int n) {
+		List<String> r = new ArrayList<>();
+		for (int i = 0; i < n; i++) {
+			r.add("Config" + (i / 2) + "|" + (i % 2 == 0 ? "Win32" : "x64"));
+		}
+		return r;
+	}
+
+	/** A solution with the projects 'P&lt;i&gt;\P&lt;i&gt;.vcxproj' each depending on up to three others */
+	public static String solution(int projects, int configurations) {
+		List<String> l = new ArrayList<>();
+		l.add("");
+		l.add("Microsoft Visual Studio Solution File, Format Version 12.00");
+		l.add("# Visual Studio 14");
+		l.add("VisualStudioVersion = 14.0.23107.0");
+		l.add("MinimumVisualStudioVersion = 10.0.40219.1");
+		for (int i = 0; i < projects; i++) {
+			l.add("Project(\"" + ProjectType.WINDOWS_VISUAL_CPP.guid + "\") = \"P" + i + "\", \"P" + i + "\\P" + i
+					+ ".vcxproj\", \"" + guid(i) + "\"");
+			if (i > 0) {
+				l.add("\tProjectSection(ProjectDependencies) = postProject");
+				for (int d = Math.max(0, i - 3); d < i; d++) {
+					l.add("\t\t" + guid(d) + " = " + guid(d));
+				}
+				l.add("\tEndProjectSection");
+			}
+			l.add("EndProject");
+		}
+		l.add("Global");
+		l.add("\tGlobalSection(SolutionConfigurationPlatforms) = preSolution");
+		for (String cfg : configurations(configurations)) {
+			l.add("\t\t" + cfg + " = " + cfg);
+		}
+		l.add("\tEndGlobalSection");
+		l.add("\tGlobalSection(ProjectConfigurationPlatforms) = postSolution");
+		for (int i = 0; i < projects; i++) {
+			for (String cfg : configurations(configurations)) {
+				l.add("\t\t" + guid(i) + "." + cfg + ".ActiveCfg = " + cfg);
+				l.add("\t\t" + guid(i) + "." + cfg + ".Build.0 = " + cfg);
+			}
+		}
+		l.add("\tEndGlobalSection");
+		l.add("\tGlobalSection(SolutionProperties) = preSolution");
+		l.add("\t\tHideSolutionNode = FALSE");
+		l.add("\tEndGlobalSection");
+		l.add("EndGlobal");
+		l.add("");
+		return TextFile.BOM + String.join("\r\n", l);
+	}
+
+	/** A C++ static library project with the configurations, a list of preprocessor definitions and source files */
+	public static String project(int index, int configurations, int definitions, int items) {
+		List<String> cfgs = configurations(configurations);
+		StringBuilder sb = new StringBuilder();
+		sb.append(TextFile.BOM).append("<?xml version=\"1.0\" encoding=\"utf-8\"?>\r\n");
+		sb.append("<Project DefaultTargets=\"Build\" ToolsVersion=\"14.0\" xmlns=\"http://schemas.microsoft.com/developer/msbuild/2003\">\r\n");
+		sb.append("  <ItemGroup Label=\"ProjectConfigurations\">\r\n");
+		for (String cfg : cfgs) {
+			String[] cp = cfg.split("\\|");
+			sb.append("    <ProjectConfiguration Include=\"").append(cfg).append("\">\r\n");
+			sb.append("      <Configuration>").append(cp[0]).append("</Configuration>\r\n");
+			sb.append("      <Platform>").append(cp[1]).append("</Platform>\r\n");
+			sb.append("    </ProjectConfiguration>\r\n");
+		}
+		sb.append("  </ItemGroup>\r\n");
+		sb.append("  <PropertyGroup Label=\"Globals\">\r\n");
+		sb.append("    <ProjectGuid>").append(guid(index)).append("</ProjectGuid>\r\n");
+		sb.append("    <RootNamespace>P").append(index).append("</RootNamespace>\r\n");
+		sb.append("  </PropertyGroup>\r\n");
+		for (String cfg : cfgs) {
+			sb.append("  <PropertyGroup Condition=\"").append(X.configurationCondition(cfg)).append("\" Label=\"Configuration\">\r\n");
+			sb.append("    <ConfigurationType>StaticLibrary</ConfigurationType>\r\n");
+			sb.append("    <UseDebugLibraries>false</UseDebugLibraries>\r\n");
+			sb.append("    <PlatformToolset>v140</PlatformToolset>\r\n");
+			sb.append("    <CharacterSet>Unicode</CharacterSet>\r\n");
+			sb.append("  </PropertyGroup>\r\n");
+		}
+		for (String cfg : cfgs) {
+			sb.append("  <ImportGroup Label=\"PropertySheets\" Condition=\"").append(X.configurationCondition(cfg)).append("\">\r\n");
+			sb.append("    <Import Project=\"$(UserRootDir)\\Microsoft.Cpp.$(Platform).user.props\" Condition=\"exists('$(UserRootDir)\\Microsoft.Cpp.$(Platform).user.props')\" Label=\"LocalAppDataPlatform\" />\r\n");
+			sb.append("  </ImportGroup>\r\n");
+		}
+		sb.append("  <PropertyGroup Label=\"UserMacros\">\r\n");
+		sb.append("    <BuildRoot>$(SolutionDir)build\\</BuildRoot>\r\n");
+		sb.append("    <ThirdParty>$(SolutionDir)3rdparty\\</ThirdParty>\r\n");
+		sb.append("  </PropertyGroup>\r\n");
+		StringBuilder defs = new StringBuilder("WIN32");
+		for (int i = 0; i < definitions; i++) {
+			defs.append(";DEFINITION_").append(i).append("=").append(i);
+		}
+		defs.append(";%(PreprocessorDefinitions)");
+		for (String cfg : cfgs) {
+			sb.append("  <ItemDefinitionGroup Condition=\"").append(X.configurationCondition(cfg)).append("\">\r\n");
+			sb.append("    <ClCompile>\r\n");
+			sb.append("      <WarningLevel>Level4</WarningLevel>\r\n");
+			sb.append("      <Optimization>MaxSpeed</Optimization>\r\n");
+			sb.append("      <PreprocessorDefinitions>").append(defs).append("</PreprocessorDefinitions>\r\n");
+			sb.append("      <AdditionalIncludeDirectories>..\\Common\\Include;.;$(ThirdParty)include</AdditionalIncludeDirectories>\r\n");
+			sb.append("    </ClCompile>\r\n");
+			sb.append("    <Lib>\r\n");
+			sb.append("      <OutputFile>$(OutDir)$(TargetName)$(TargetExt)</OutputFile>\r\n");
+			sb.append("    </Lib>\r\n");
+			sb.append("  </ItemDefinitionGroup>\r\n");
+		}
+		sb.append("  <ItemGroup>\r\n");
+		for (int i = 0; i < items; i++) {
+			sb.append("    <ClCompile Include=\"src\\dir").append(i / 100).append("\\file").append(i).append(".cpp\" />\r\n");
+		}
+		sb.append("  </ItemGroup>\r\n");
+		sb.append("  <Import Project=\"$(VCTargetsPath)\\Microsoft.Cpp.targets\" />\r\n");
+		sb.append("</Project>");
+		return sb.toString();
+	}
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2020 Robert Sauter
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.isotes.vs.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/** Access to the elements of a configuration; mutating benchmarks restore the original state */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ElementBenchmark {
+	private ConfigurationWrapper cfg;
+	private GenericPropertyGroup userMacros;
+	private PropertyGroupWrapper largePropertyGroup;
+	private boolean toggle;
+
+	@Setup
+	public void setup() {
+		ProjectWrapper project = new ProjectWrapper(BenchmarkData.write(BenchmarkData.tempDirectory().resolve("Elements.vcxproj"),
+				BenchmarkData.project(0, 2, 300, 10)));
+		cfg = project.getConfiguration(BenchmarkData.configurations(1).get(0));
+		userMacros = project.getUserMacrosPropertyGroup();
+		// 150 properties with the looked up one at the end; repeated names as found in merged property sheets
+		largePropertyGroup = project.getConfiguration(BenchmarkData.configurations(2).get(1)).propertyGroup;
+		String[] names = {"ConfigurationType", "UseDebugLibraries", "WholeProgramOptimization", "CharacterSet"};
+		largePropertyGroup.remove("PlatformToolset");
+		for (int i = largePropertyGroup.size(); i < 149; i++) {
+			X.addStringElement(largePropertyGroup.propertyGroup, names[i % names.length], "Value" + i);
+		}
+		X.addStringElement(largePropertyGroup.propertyGroup, "PlatformToolset", "v140");
+	}
+
+	@Benchmark
+	public Optional<String> xString() {
+		return X.string(cfg.clCompile.getWarningLevelList());
+	}
+
+	@Benchmark
+	public void xSet() {
+		toggle = !toggle;
+		X.set(cfg.clCompile.getWarningLevelList(), toggle ? "Level3" : "Level4");
+	}
+
+	@Benchmark
+	public List<String> xListRegex() {
+		return X.list(cfg.clCompile.getPreprocessorDefinitionsList(), "\\s*;\\s*");
+	}
+
+	@Benchmark
+	public List<String> xListPattern() {
+		return X.list(cfg.clCompile.getPreprocessorDefinitionsList(), X.LIST_DELIMITER);
+	}
+
+	@Benchmark
+	public List<String> xListChar() {
+		return X.list(cfg.clCompile.getPreprocessorDefinitionsList(), ';');
+	}
+
+	@Benchmark
+	public void xForEachEntry(Blackhole bh) {
+		X.forEachEntry(cfg.clCompile.getPreprocessorDefinitionsList(), bh::consume);
+	}
+
+	@Benchmark
+	public void listIterate(Blackhole bh) {
+		for (String definition : cfg.getPreprocessorDefinitions()) {
+			bh.consume(definition);
+		}
+	}
+
+	@Benchmark
+	public void listAddRemove() {
+		ListElementWrapper definitions = cfg.getPreprocessorDefinitions();
+		definitions.add("BENCHMARK");
+		definitions.remove(definitions.size() - 1);
+	}
+
+	@Benchmark
+	public String propertyGroupGet() {
+		return cfg.propertyGroup.get("PlatformToolset");
+	}
+
+	@Benchmark
+	public String propertyGroupPut() {
+		toggle = !toggle;
+		return cfg.propertyGroup.put("PlatformToolset", toggle ? "v141" : "v140");
+	}
+
+	@Benchmark
+	public String largePropertyGroupGet() {
+		return largePropertyGroup.get("PlatformToolset");
+	}
+
+	/** Baseline for {@link #largePropertyGroupGet()}: the scan of the entries the lookup replaces */
+	@Benchmark
+	public String largePropertyGroupScan() {
+		for (Map.Entry<String, String> entry : largePropertyGroup.entrySet()) {
+			if (entry.getKey().equals("PlatformToolset")) {
+				return entry.getValue();
+			}
+		}
+		return null;
+	}
+
+	@Benchmark
+	public String largePropertyGroupPut() {
+		toggle = !toggle;
+		return largePropertyGroup.put("PlatformToolset", toggle ? "v141" : "v140");
+	}
+
+	@Benchmark
+	public String genericPropertyGroupPut() {
+		toggle = !toggle;
+		return userMacros.put("ThirdParty", toggle ? "$(SolutionDir)external\\" : "$(SolutionDir)3rdparty\\");
+	}
+
+	@Benchmark
+	public void genericPropertyGroupIterate(Blackhole bh) {
+		userMacros.forEach((k, v) -> bh.consume(v));
+	}
+}
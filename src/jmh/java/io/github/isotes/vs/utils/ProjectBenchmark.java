@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2020 Robert Sauter
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.isotes.vs.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Parsing, configuration lookup and writing of projects */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ProjectBenchmark {
+	private Path hilo;
+	private Path large;
+	private ProjectWrapper hiloProject;
+	private ProjectWrapper largeProject;
+	private List<ProjectConfiguration> largeConfigurations;
+
+	@Setup
+	public void setup() {
+		hilo = BenchmarkData.hilo("Annotator/Annotator.vcxproj");
+		// 50 configurations, 300 preprocessor definitions, 10k source files
+		large = BenchmarkData.write(BenchmarkData.tempDirectory().resolve("Large.vcxproj"), BenchmarkData.project(0, 50, 300, 10_000));
+		hiloProject = new ProjectWrapper(hilo);
+		largeProject = new ProjectWrapper(large);
+		largeConfigurations = largeProject.configurations();
+	}
+
+	@Benchmark
+	public ProjectWrapper parseHilo() {
+		return new ProjectWrapper(hilo);
+	}
+
+	@Benchmark
+	public ProjectWrapper parseLarge() {
+		return new ProjectWrapper(large);
+	}
+
+	@Benchmark
+	public ProjectWrapper parseLargeMapped() {
+		return new ProjectWrapper(new MappedTextFile(large));
+	}
+
+	@Benchmark
+	public ProjectSnapshot readLarge() {
+		return new ProjectReader().read(large);
+	}
+
+	@Benchmark
+	public ProjectSnapshot readLargeSettings() {
+		return new ProjectReader(ProjectReader.SETTINGS).read(large);
+	}
+
+	@Benchmark
+	public String stringifyHilo() {
+		return hiloProject.stringify();
+	}
+
+	@Benchmark
+	public String stringifyLarge() {
+		return largeProject.stringify();
+	}
+
+	@Benchmark
+	public void resolveConfigurationsHilo(Blackhole bh) {
+		for (ProjectConfiguration pc : hiloProject.configurations()) {
+			bh.consume(pc.resolve());
+		}
+	}
+
+	@Benchmark
+	public void resolveConfigurationsLarge(Blackhole bh) {
+		for (ProjectConfiguration pc : largeConfigurations) {
+			bh.consume(pc.resolve());
+		}
+	}
+}
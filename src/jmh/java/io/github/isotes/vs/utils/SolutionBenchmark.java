@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2020 Robert Sauter
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.isotes.vs.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/** Parsing and writing of solutions */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SolutionBenchmark {
+	private Path hilo;
+	private Path large;
+	private VsSolution largeSolution;
+
+	@Setup
+	public void setup() {
+		hilo = BenchmarkData.hilo("Hilo.sln");
+		large = BenchmarkData.write(BenchmarkData.tempDirectory().resolve("Large.sln"), BenchmarkData.solution(1000, 50));
+		largeSolution = new VsSolution(large);
+	}
+
+	@Benchmark
+	public VsSolution parseHilo() {
+		return new VsSolution(hilo);
+	}
+
+	@Benchmark
+	public VsSolution parseLarge() {
+		return new VsSolution(large);
+	}
+
+	@Benchmark
+	public VsSolution parseLargeMapped() {
+		return new VsSolution(new MappedTextFile(large));
+	}
+
+	@Benchmark
+	public String stringifyLarge() {
+		return largeSolution.stringify();
+	}
+
+	@Benchmark
+	public int dependenciesLarge() {
+		int n = 0;
+		for (VsSolutionProject vsp : largeSolution.projects) {
+			n += vsp.dependencies(largeSolution).size();
+		}
+		return n;
+	}
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2020 Robert Sauter
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.isotes.vs.utils;
+
+import org.apache.xmlbeans.XmlCursor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Applies an edit to all configurations of all projects of a solution and saves the changed project files
+ *
+ * <p>This is the parallel equivalent of loading each project, calling the edit for every
+ * {@link ProjectConfiguration#resolve() resolved} configuration, and saving it with
+ * {@link ProjectWrapper#saveIfChanged(Path)}, except that projects whose document has not been modified are neither
+ * serialized nor compared with their file. Projects are processed concurrently on a bounded
+ * {@link java.util.concurrent.ForkJoinPool} while reading and writing of files is limited separately, i.e., parsing
+ * and serializing projects do not hold up file access of other projects. A project is only kept in memory while it is
+ * processed. The edit is called concurrently for different projects and must, therefore, synchronize access to shared
+ * state.</p>
+ *
+ * <p>A project that cannot be loaded, edited, or saved does not abort the others: its exception is recorded in its
+ * {@link ProjectResult} and it is not saved. Solution folders are skipped.</p>
+ */
+public class BulkEdit {
+	/** The outcome and timing of editing a single project */
+	public static class ProjectResult {
+		public final VsSolutionProject project;
+		/** The number of configurations the edit has been applied to */
+		public final int configurations;
+		/** The number of configurations whose edit has modified the project document */
+		public final int changedConfigurations;
+		/** Whether the project file has been written */
+		public final boolean written;
+		public final long loadNanos;
+		public final long editNanos;
+		public final long saveNanos;
+		/** The exception if the project could not be processed or null */
+		public final RuntimeException failure;
+
+		public ProjectResult(VsSolutionProject project, int configurations, int changedConfigurations, boolean written,
+				long loadNanos, long editNanos, long saveNanos, RuntimeException failure) {
+			this.project = project;
+			this.configurations = configurations;
+			this.changedConfigurations = changedConfigurations;
+			this.written = written;
+			this.loadNanos = loadNanos;
+			this.editNanos = editNanos;
+			this.saveNanos = saveNanos;
+			this.failure = failure;
+		}
+
+		@Override
+		public String toString() {
+			return project.name + ": " + (failure != null ? "failed (" + failure.getMessage() + ")"
+					: changedConfigurations + "/" + configurations + " configurations changed" + (written ? ", written" : ""))
+					+ String.format(", load %.1f ms, edit %.1f ms, save %.1f ms", loadNanos / 1e6, editNanos / 1e6, saveNanos / 1e6);
+		}
+	}
+
+	public final VsSolution solution;
+	/** The results of all projects except solution folders in the order of the solution */
+	public final List<ProjectResult> results;
+
+	/**
+	 * @param solution the solution
+	 * @param parallelism the maximum number of projects processed concurrently
+	 * @param ioParallelism the maximum number of project files read or written concurrently
+	 * @param loader the function to load a project, e.g., {@link ProjectCache#get(Path)}, which is called while
+	 * holding an I/O permit, or null to read each file with the permit and parse it without
+	 * @param edit the edit applied to each configuration
+	 */
+	public BulkEdit(VsSolution solution, int parallelism, int ioParallelism, Function<Path, ProjectWrapper> loader,
+			Consumer<ConfigurationWrapper> edit) {
+		if (ioParallelism < 1) {
+			throw new IllegalArgumentException("I/O parallelism must be positive: " + ioParallelism);
+		}
+		this.solution = solution;
+		List<VsSolutionProject> vsps = new ArrayList<>();
+		for (VsSolutionProject vsp : solution.projects) {
+			if (vsp.projectType() != ProjectType.SOLUTION_FOLDER) {
+				vsps.add(vsp);
+			}
+		}
+		Semaphore io = new Semaphore(ioParallelism);
+		this.results = Collections.unmodifiableList(Parallel.map(vsps, parallelism, vsp -> process(vsp, io, loader, edit)));
+	}
+
+	/** Process the projects with half as many project files read or written concurrently */
+	public BulkEdit(VsSolution solution, int parallelism, Consumer<ConfigurationWrapper> edit) {
+		this(solution, parallelism, Math.max(1, parallelism / 2), null, edit);
+	}
+
+	public BulkEdit(VsSolution solution, Consumer<ConfigurationWrapper> edit) {
+		this(solution, Parallel.defaultParallelism(), edit);
+	}
+
+	private static ProjectResult process(VsSolutionProject vsp, Semaphore io, Function<Path, ProjectWrapper> loader,
+			Consumer<ConfigurationWrapper> edit) {
+		int configurations = 0;
+		int changedConfigurations = 0;
+		boolean written = false;
+		long loadNanos = 0;
+		long editNanos = 0;
+		long saveNanos = 0;
+		try {
+			long start = System.nanoTime();
+			ProjectWrapper project = loader != null ? load(vsp.path, io, loader) : read(vsp.path, io);
+			long loaded = System.nanoTime();
+			loadNanos = loaded - start;
+			// the change stamp covers all modifications of the document, also those outside of the configuration
+			XmlCursor cursor = project.projectDocument.newCursor();
+			XmlCursor.ChangeStamp documentStamp = cursor.getDocChangeStamp();
+			boolean modified;
+			try {
+				for (ProjectConfiguration projectConfiguration : project.configurations()) {
+					ConfigurationWrapper cfg = projectConfiguration.resolve();
+					XmlCursor.ChangeStamp stamp = cursor.getDocChangeStamp();
+					edit.accept(cfg);
+					configurations++;
+					if (stamp.hasChanged()) {
+						changedConfigurations++;
+					}
+				}
+				modified = documentStamp.hasChanged();
+			} finally {
+				cursor.dispose();
+			}
+			long edited = System.nanoTime();
+			editNanos = edited - loaded;
+			if (modified) {
+				written = save(project, vsp.path, io);
+			}
+			saveNanos = System.nanoTime() - edited;
+			return new ProjectResult(vsp, configurations, changedConfigurations, written, loadNanos, editNanos, saveNanos, null);
+		} catch (RuntimeException e) {
+			return new ProjectResult(vsp, configurations, changedConfigurations, written, loadNanos, editNanos, saveNanos, e);
+		}
+	}
+
+	private static ProjectWrapper load(Path path, Semaphore io, Function<Path, ProjectWrapper> loader) {
+		acquire(io);
+		try {
+			return loader.apply(path);
+		} finally {
+			io.release();
+		}
+	}
+
+	private static ProjectWrapper read(Path path, Semaphore io) {
+		byte[] content;
+		acquire(io);
+		try {
+			content = Files.readAllBytes(path);
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Reading " + path + " failed: " + e.getMessage(), e);
+		} finally {
+			io.release();
+		}
+		return new ProjectWrapper(new TextFile(path, content, StandardCharsets.UTF_8));
+	}
+
+	/** Equivalent to {@link ProjectWrapper#saveIfChanged(Path)} but only holding the permit for file access */
+	private static boolean save(ProjectWrapper project, Path path, Semaphore io) {
+		try {
+			ByteArrayOutputStream content = new ByteArrayOutputStream();
+			project.write(content, project.newline, project.hasBom);
+			acquire(io);
+			try {
+				return FileUpdate.writeIfChanged(path, content.toByteArray());
+			} finally {
+				io.release();
+			}
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Saving project to " + path + " failed: " + e.getMessage(), e);
+		}
+	}
+
+	private static void acquire(Semaphore semaphore) {
+		try {
+			semaphore.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for file access", e);
+		}
+	}
+
+	/** @return the results of the projects that have been written */
+	public List<ProjectResult> written() {
+		List<ProjectResult> r = new ArrayList<>();
+		for (ProjectResult result : results) {
+			if (result.written) {
+				r.add(result);
+			}
+		}
+		return r;
+	}
+
+	/** @return the results of the projects that could not be processed */
+	public List<ProjectResult> failures() {
+		List<ProjectResult> r = new ArrayList<>();
+		for (ProjectResult result : results) {
+			if (result.failure != null) {
+				r.add(result);
+			}
+		}
+		return r;
+	}
+}
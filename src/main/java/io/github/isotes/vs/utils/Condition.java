@@ -0,0 +1,416 @@
+/*
+ * Copyright (c) 2020 Robert Sauter
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.isotes.vs.utils;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Compiled MSBuild Condition attribute, e.g., {@code '$(Configuration)|$(Platform)'=='Release|x64'}
+ *
+ * <p>Supported are the operators 'and', 'or', and '!' (case-insensitive), parentheses, the comparisons '==', '!=',
+ * '&lt;', '&gt;', '&lt;=', and '&gt;=', boolean operands like 'true', and the functions Exists and HasTrailingSlash.
+ * Operands are single-quoted strings or unquoted words; their $(Name) property references are expanded during
+ * evaluation. Like in MSBuild, '==' and '!=' compare case-insensitively and numerically if both sides are numbers,
+ * while the other comparisons require numbers.</p>
+ *
+ * <p>Conditions are immutable and {@link #parse(String)} caches them by their text for all projects as most
+ * conditions occur many times. Texts that cannot be parsed are cached as well, so they are not parsed again. The cache
+ * is cleared when it exceeds {@value #CACHE_LIMIT} conditions or by {@link #clearCache()}.</p>
+ */
+public class Condition {
+	static final int CACHE_LIMIT = 4096;
+	private static final Map<String, Condition> CACHE = new ConcurrentHashMap<>();
+	private static final Condition TRUE = new Condition("", e -> true, null);
+
+	/** The state of a single evaluation */
+	private static final class Evaluation {
+		final Function<String, String> properties;
+		final Path directory;
+
+		Evaluation(Function<String, String> properties, Path directory) {
+			this.properties = properties;
+			this.directory = directory;
+		}
+
+		String expand(PropertyEvaluator.Template template) {
+			return template.expand(properties);
+		}
+	}
+
+	private interface Expression {
+		boolean evaluate(Evaluation e);
+	}
+
+	public final String text;
+	private final Expression expression;
+	// the reason why the text cannot be parsed or null
+	private final IllegalArgumentException failure;
+
+	private Condition(String text, Expression expression, IllegalArgumentException failure) {
+		this.text = text;
+		this.expression = expression;
+		this.failure = failure;
+	}
+
+	/**
+	 * @param condition the text of a Condition attribute; null or blank conditions are always true
+	 * @return the compiled condition, which may be shared with other callers
+	 * @throws IllegalArgumentException if the condition cannot be parsed
+	 */
+	public static Condition parse(String condition) {
+		Condition r = parseOrFalse(condition);
+		if (r.failure != null) {
+			throw new IllegalArgumentException(r.failure.getMessage(), r.failure);
+		}
+		return r;
+	}
+
+	/**
+	 * @param condition the text of a Condition attribute; null or blank conditions are always true
+	 * @return the compiled condition or, if it cannot be parsed, a condition that is always false as MSBuild would not
+	 *         process the element
+	 */
+	public static Condition parseOrFalse(String condition) {
+		if (condition == null || condition.trim().isEmpty()) {
+			return TRUE;
+		}
+		Condition r = CACHE.get(condition);
+		if (r == null) {
+			try {
+				r = new Condition(condition, new Parser(condition).parse(), null);
+			} catch (IllegalArgumentException failure) {
+				r = new Condition(condition, e -> false, failure);
+			}
+			if (CACHE.size() >= CACHE_LIMIT) {
+				// the conditions of a workspace fit easily; a full cache indicates many generated texts
+				CACHE.clear();
+			}
+			CACHE.putIfAbsent(condition, r);
+		}
+		return r;
+	}
+
+	/** Discard all cached conditions */
+	public static void clearCache() {
+		CACHE.clear();
+	}
+
+	/**
+	 * @param properties the values of the properties by name as written in the condition; null for undefined ones
+	 * @param directory the directory relative paths of Exists are resolved against or null to treat them as missing
+	 * @throws IllegalArgumentException if an operand has the wrong type, e.g., a non-numeric value for '&lt;'
+	 */
+	public boolean evaluate(Function<String, String> properties, Path directory) {
+		return expression.evaluate(new Evaluation(properties, directory));
+	}
+
+	/** Evaluate without base directory for Exists */
+	public boolean evaluate(Function<String, String> properties) {
+		return evaluate(properties, null);
+	}
+
+	/** @return whether the condition is true for the configuration, e.g., Release|x64, with all other properties undefined */
+	public boolean appliesTo(String configuration, Path directory) {
+		return evaluate(configurationProperties(configuration), directory);
+	}
+
+	/** @return the Configuration and Platform properties of a configuration, e.g., Release|x64, matched case-insensitively */
+	public static Function<String, String> configurationProperties(String configuration) {
+		String[] cp = configuration.split("\\|", 2);
+		return name -> name.equalsIgnoreCase("Configuration") ? cp[0]
+				: name.equalsIgnoreCase("Platform") ? (cp.length > 1 ? cp[1] : "") : null;
+	}
+
+	@Override
+	public String toString() {
+		return text;
+	}
+
+	private static boolean bool(String value, String text) {
+		switch (value.trim().toLowerCase(Locale.ROOT)) {
+			case "true":
+			case "on":
+			case "yes":
+				return true;
+			case "false":
+			case "off":
+			case "no":
+				return false;
+			default:
+				throw new IllegalArgumentException("Expected boolean value instead of '" + value + "' in condition " + text);
+		}
+	}
+
+	/** @return the value as number or null if it is not a number */
+	private static Double number(String value) {
+		String v = value.trim();
+		try {
+			if (v.length() > 2 && (v.startsWith("0x") || v.startsWith("0X"))) {
+				return (double) Long.parseLong(v.substring(2), 16);
+			}
+			// exclude values accepted by parseDouble only, e.g., 'NaN' or '1d'
+			if (v.isEmpty() || !(Character.isDigit(v.charAt(v.length() - 1)) || v.endsWith("."))) {
+				return null;
+			}
+			return Double.parseDouble(v);
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	private static boolean exists(String path, Path directory) {
+		String p = path.trim();
+		if (p.isEmpty()) {
+			return false;
+		}
+		try {
+			Path resolved = Paths.get(p.replace('\\', File.separatorChar));
+			if (!resolved.isAbsolute()) {
+				if (directory == null) {
+					return false;
+				}
+				resolved = directory.resolve(resolved);
+			}
+			return Files.exists(resolved);
+		} catch (InvalidPathException e) {
+			return false;
+		}
+	}
+
+	/** Recursive descent parser creating the expression tree */
+	private static final class Parser {
+		private final String text;
+		private final List<String> tokens = new ArrayList<>();
+		// whether the token at the same index is a quoted string
+		private final List<Boolean> quoted = new ArrayList<>();
+		private int pos;
+
+		Parser(String text) {
+			this.text = text;
+			tokenize();
+		}
+
+		private IllegalArgumentException error(String message) {
+			return new IllegalArgumentException(message + " in condition " + text);
+		}
+
+		private void tokenize() {
+			int i = 0;
+			int n = text.length();
+			while (i < n) {
+				char c = text.charAt(i);
+				if (Character.isWhitespace(c)) {
+					i++;
+				} else if (c == '\'') {
+					int end = text.indexOf('\'', i + 1);
+					if (end < 0) {
+						throw error("Unterminated string");
+					}
+					add(text.substring(i + 1, end), true);
+					i = end + 1;
+				} else if (c == '(' || c == ')' || c == ',') {
+					add(String.valueOf(c), false);
+					i++;
+				} else if (c == '=' || c == '!' || c == '<' || c == '>') {
+					boolean twoChars = i + 1 < n && text.charAt(i + 1) == '=';
+					if (c == '=' && !twoChars) {
+						throw error("Expected '=='");
+					}
+					add(text.substring(i, twoChars ? i + 2 : i + 1), false);
+					i += twoChars ? 2 : 1;
+				} else {
+					int start = i;
+					while (i < n && !Character.isWhitespace(text.charAt(i)) && "'(),=!<>".indexOf(text.charAt(i)) < 0) {
+						if ((text.charAt(i) == '$' || text.charAt(i) == '@' || text.charAt(i) == '%')
+								&& i + 1 < n && text.charAt(i + 1) == '(') {
+							i = closingParenthesis(i + 1) + 1;
+						} else {
+							i++;
+						}
+					}
+					add(text.substring(start, i), false);
+				}
+			}
+		}
+
+		private int closingParenthesis(int open) {
+			int depth = 0;
+			for (int i = open; i < text.length(); i++) {
+				if (text.charAt(i) == '(') {
+					depth++;
+				} else if (text.charAt(i) == ')' && --depth == 0) {
+					return i;
+				}
+			}
+			throw error("Unbalanced parentheses");
+		}
+
+		private void add(String token, boolean isQuoted) {
+			tokens.add(token);
+			quoted.add(isQuoted);
+		}
+
+		private String peek() {
+			return pos < tokens.size() && !quoted.get(pos) ? tokens.get(pos) : null;
+		}
+
+		private boolean accept(String token) {
+			String t = peek();
+			if (t != null && t.equalsIgnoreCase(token)) {
+				pos++;
+				return true;
+			}
+			return false;
+		}
+
+		private void expect(String token) {
+			if (!accept(token)) {
+				throw error("Expected '" + token + "'");
+			}
+		}
+
+		Expression parse() {
+			Expression r = or();
+			if (pos < tokens.size()) {
+				throw error("Unexpected '" + tokens.get(pos) + "'");
+			}
+			return r;
+		}
+
+		private Expression or() {
+			Expression left = and();
+			while (accept("or")) {
+				Expression l = left;
+				Expression r = and();
+				left = e -> l.evaluate(e) || r.evaluate(e);
+			}
+			return left;
+		}
+
+		private Expression and() {
+			Expression left = not();
+			while (accept("and")) {
+				Expression l = left;
+				Expression r = not();
+				left = e -> l.evaluate(e) && r.evaluate(e);
+			}
+			return left;
+		}
+
+		private Expression not() {
+			if (accept("!")) {
+				Expression operand = not();
+				return e -> !operand.evaluate(e);
+			}
+			return primary();
+		}
+
+		private Expression primary() {
+			if (accept("(")) {
+				Expression r = or();
+				expect(")");
+				return r;
+			}
+			String name = peek();
+			if (name != null && pos + 1 < tokens.size() && "(".equals(tokens.get(pos + 1)) && !quoted.get(pos + 1)) {
+				pos += 2;
+				return function(name);
+			}
+			PropertyEvaluator.Template left = operand();
+			String op = peek();
+			if (op == null || !(op.equals("==") || op.equals("!=") || op.equals("<") || op.equals(">")
+					|| op.equals("<=") || op.equals(">="))) {
+				return e -> bool(e.expand(left), text);
+			}
+			pos++;
+			PropertyEvaluator.Template right = operand();
+			return comparison(op, left, right);
+		}
+
+		private PropertyEvaluator.Template operand() {
+			if (pos >= tokens.size()) {
+				throw error("Unexpected end");
+			}
+			String token = tokens.get(pos);
+			if (!quoted.get(pos) && (token.length() == 1 && "(),".contains(token) || token.equalsIgnoreCase("and")
+					|| token.equalsIgnoreCase("or") || token.startsWith("=") || token.startsWith("!")
+					|| token.startsWith("<") || token.startsWith(">"))) {
+				throw error("Unexpected '" + token + "'");
+			}
+			pos++;
+			return PropertyEvaluator.Template.parse(token);
+		}
+
+		private Expression function(String name) {
+			List<PropertyEvaluator.Template> args = new ArrayList<>();
+			if (!accept(")")) {
+				do {
+					args.add(operand());
+				} while (accept(","));
+				expect(")");
+			}
+			if (args.size() != 1) {
+				throw error("Expected one argument for " + name);
+			}
+			PropertyEvaluator.Template arg = args.get(0);
+			if (name.equalsIgnoreCase("Exists")) {
+				return e -> exists(e.expand(arg), e.directory);
+			}
+			if (name.equalsIgnoreCase("HasTrailingSlash")) {
+				return e -> {
+					String value = e.expand(arg);
+					return value.endsWith("/") || value.endsWith("\\");
+				};
+			}
+			throw error("Unsupported function " + name);
+		}
+
+		private Expression comparison(String op, PropertyEvaluator.Template left, PropertyEvaluator.Template right) {
+			String text = this.text;
+			if (op.equals("==") || op.equals("!=")) {
+				boolean equal = op.equals("==");
+				return e -> {
+					String l = e.expand(left);
+					String r = e.expand(right);
+					Double ln = number(l);
+					Double rn = number(r);
+					boolean same = ln != null && rn != null ? ln.doubleValue() == rn.doubleValue() : l.equalsIgnoreCase(r);
+					return same == equal;
+				};
+			}
+			return e -> {
+				String l = e.expand(left);
+				String r = e.expand(right);
+				Double ln = number(l);
+				Double rn = number(r);
+				if (ln == null || rn == null) {
+					throw new IllegalArgumentException("Expected numbers instead of '" + l + "' " + op + " '" + r + "' in condition " + text);
+				}
+				int c = Double.compare(ln, rn);
+				switch (op) {
+					case "<":
+						return c < 0;
+					case ">":
+						return c > 0;
+					case "<=":
+						return c <= 0;
+					default:
+						return c >= 0;
+				}
+			};
+		}
+	}
+}
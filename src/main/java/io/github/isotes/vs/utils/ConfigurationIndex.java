@@ -0,0 +1,316 @@
+/*
+ * Copyright (c) 2020 Robert Sauter
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.isotes.vs.utils;
+
+import io.github.isotes.vs.model.ClCompileDocument;
+import io.github.isotes.vs.model.ImportGroupType;
+import io.github.isotes.vs.model.ItemDefinitionGroupType;
+import io.github.isotes.vs.model.ItemGroupType;
+import io.github.isotes.vs.model.LinkItem;
+import io.github.isotes.vs.model.ProjectConfigurationDocument;
+import io.github.isotes.vs.model.ProjectDocument;
+import io.github.isotes.vs.model.ProjectReferenceDocument;
+import io.github.isotes.vs.model.PropertyGroupType;
+import io.github.isotes.vs.model.SimpleItemType;
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlObject;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Internal index of the configuration specific groups of a project for {@link ConfigurationWrapper}
+ *
+ * <p>The index is built in a single pass over the groups of the project. The conditions are compiled with
+ * {@link Condition} and evaluated for each configuration of the 'ProjectConfigurations' item group with only the
+ * Configuration and Platform properties defined; conditions in the exact format of
+ * {@link X#configurationCondition(String)} are recognized without evaluation. Each entry lists all groups that apply
+ * to the configuration including those without condition. Like
+ * {@link X#configComponent(String, Iterable, java.util.function.Function)}, the first group with the exact condition
+ * of a configuration is its primary group. Without one, the first other group is used whose condition is true and
+ * depends on Configuration or Platform only; conditions referencing other properties, e.g., guards like
+ * '$(VisualStudioVersion)'=='', are unknown and such groups are listed but never primary.</p>
+ *
+ * <p>The index records the top-level groups of the project with their conditions and a change stamp of the document.
+ * {@link #isValid()} is constant time as long as the document has not been modified. Otherwise, it compares the
+ * recorded groups with the current DOM, so that added, removed, or replaced groups and changed conditions are detected
+ * without accessing removed groups, and renews the stamp if they are unchanged, e.g., after editing values. The groups
+ * of the index are not modified after construction and can be shared between threads; the items of the item
+ * definition groups are resolved lazily and published as an immutable {@link Items} object.</p>
+ */
+class ConfigurationIndex {
+	private static final List<String> GROUPS = Arrays.asList("PropertyGroup", "ImportGroup", "ItemDefinitionGroup");
+
+	private final Map<String, Entry> entries = new LinkedHashMap<>();
+	private final ProjectDocument.Project project;
+	private final Node projectNode;
+	// the DOM nodes and conditions of the top-level groups in document order when the index has been built
+	private final List<Node> groupNodes = new ArrayList<>();
+	private final List<String> groupConditions = new ArrayList<>();
+	private final List<String> declared;
+	// detects modifications of the document since the groups have been checked last
+	private volatile XmlCursor.ChangeStamp stamp;
+
+	/** The items of the primary item definition group of a configuration */
+	static final class Items {
+		// detects modifications of the document since the items have been resolved
+		private final XmlCursor.ChangeStamp stamp;
+		final ClCompileDocument.ClCompile clCompile;
+		final LinkItem lib;
+		final LinkItem link;
+		final ProjectReferenceDocument.ProjectReference projectReference;
+
+		private Items(XmlCursor.ChangeStamp stamp, ClCompileDocument.ClCompile clCompile, LinkItem lib, LinkItem link,
+				ProjectReferenceDocument.ProjectReference projectReference) {
+			this.stamp = stamp;
+			this.clCompile = clCompile;
+			this.lib = lib;
+			this.link = link;
+			this.projectReference = projectReference;
+		}
+	}
+
+	static final class Entry {
+		private static final Items NO_ITEMS = new Items(null, null, null, null, null);
+
+		PropertyGroupType propertyGroup;
+		ImportGroupType importGroup;
+		ItemDefinitionGroupType itemDefinitionGroup;
+		final List<PropertyGroupType> propertyGroups = new ArrayList<>();
+		final List<ImportGroupType> importGroups = new ArrayList<>();
+		final List<ItemDefinitionGroupType> itemDefinitionGroups = new ArrayList<>();
+		// the conditional groups that may be used as primary groups, see selects()
+		private final Set<XmlObject> selecting = Collections.newSetFromMap(new IdentityHashMap<>());
+		private volatile Items items;
+
+		/** @return the items of the item definition group, determined again after modifications of the document */
+		Items items() {
+			if (itemDefinitionGroup == null) {
+				return NO_ITEMS;
+			}
+			Items current = items;
+			if (current != null && !current.stamp.hasChanged()) {
+				return current;
+			}
+			// taken before resolving, so that a concurrent modification is detected by the next call
+			XmlCursor.ChangeStamp stamp = X.changeStamp(itemDefinitionGroup);
+			ClCompileDocument.ClCompile clCompile = null;
+			ProjectReferenceDocument.ProjectReference projectReference = null;
+			LinkItem link = X.optionalComponent(itemDefinitionGroup.getLinkList()).orElse(null);
+			LinkItem lib = X.optionalComponent(itemDefinitionGroup.getLibList()).orElse(null);
+			for (SimpleItemType si : itemDefinitionGroup.getItemList()) {
+				if (si instanceof ClCompileDocument.ClCompile) {
+					clCompile = (ClCompileDocument.ClCompile) si;
+				} else if (si instanceof ProjectReferenceDocument.ProjectReference) {
+					projectReference = (ProjectReferenceDocument.ProjectReference) si;
+				}
+			}
+			current = new Items(stamp, clCompile, lib, link, projectReference);
+			items = current;
+			return current;
+		}
+	}
+
+	ConfigurationIndex(ProjectWrapper pw) {
+		Path directory = pw.path != null ? pw.path.toAbsolutePath().getParent() : null;
+		project = pw.project;
+		stamp = X.changeStamp(project);
+		projectNode = project.getDomNode();
+		for (Node node = projectNode.getFirstChild(); node != null; node = node.getNextSibling()) {
+			if (isGroup(node)) {
+				groupNodes.add(node);
+				groupConditions.add(condition(node));
+			}
+		}
+		declared = declared(project);
+		for (String config : declared) {
+			entries.computeIfAbsent(config, k -> new Entry());
+		}
+		// configurations that only occur in conditions
+		for (String condition : groupConditions) {
+			String config = configuration(condition);
+			if (config != null) {
+				entries.computeIfAbsent(config, k -> new Entry());
+			}
+		}
+		for (PropertyGroupType pg : project.getPropertyGroupList()) {
+			for (Entry entry : applicable(pg, directory)) {
+				entry.propertyGroups.add(pg);
+			}
+		}
+		for (ImportGroupType ig : project.getImportGroupList()) {
+			for (Entry entry : applicable(ig, directory)) {
+				entry.importGroups.add(ig);
+			}
+		}
+		for (ItemDefinitionGroupType idg : project.getItemDefinitionGroupList()) {
+			for (Entry entry : applicable(idg, directory)) {
+				entry.itemDefinitionGroups.add(idg);
+			}
+		}
+		for (Map.Entry<String, Entry> e : entries.entrySet()) {
+			Entry entry = e.getValue();
+			entry.propertyGroup = primary(e.getKey(), entry, entry.propertyGroups);
+			entry.importGroup = primary(e.getKey(), entry, entry.importGroups);
+			entry.itemDefinitionGroup = primary(e.getKey(), entry, entry.itemDefinitionGroups);
+		}
+	}
+
+	/** @return the configurations of the ProjectConfigurations item group */
+	private static List<String> declared(ProjectDocument.Project project) {
+		List<String> r = new ArrayList<>();
+		X.component("ProjectConfigurations", project.getItemGroupList(), ItemGroupType::getLabel).ifPresent(pcs -> {
+			for (SimpleItemType item : pcs.getItemList()) {
+				if (item instanceof ProjectConfigurationDocument.ProjectConfiguration && item.getInclude() != null) {
+					r.add(item.getInclude());
+				}
+			}
+		});
+		return r;
+	}
+
+	private static boolean isGroup(Node node) {
+		return node.getNodeType() == Node.ELEMENT_NODE && GROUPS.contains(node.getLocalName());
+	}
+
+	private static String condition(Node node) {
+		Element element = (Element) node;
+		return element.hasAttribute("Condition") ? element.getAttribute("Condition") : null;
+	}
+
+	/**
+	 * @return false if top-level groups have been added, removed, or replaced or their conditions have been changed
+	 *         since the index has been built
+	 */
+	boolean isValid() {
+		if (!stamp.hasChanged()) {
+			return true;
+		}
+		XmlCursor.ChangeStamp renewed = X.changeStamp(project);
+		int i = 0;
+		for (Node node = projectNode.getFirstChild(); node != null; node = node.getNextSibling()) {
+			if (isGroup(node)) {
+				if (i >= groupNodes.size() || groupNodes.get(i) != node || !Objects.equals(groupConditions.get(i), condition(node))) {
+					return false;
+				}
+				i++;
+			}
+		}
+		if (i != groupNodes.size()) {
+			return false;
+		}
+		stamp = renewed;
+		return true;
+	}
+
+	/** @return false if the configurations of the ProjectConfigurations item group have been changed */
+	boolean isCurrent(ProjectDocument.Project project) {
+		return declared.equals(declared(project));
+	}
+
+	private static String condition(XmlObject group) {
+		if (group instanceof PropertyGroupType) {
+			return ((PropertyGroupType) group).getCondition();
+		}
+		if (group instanceof ImportGroupType) {
+			return ((ImportGroupType) group).getCondition();
+		}
+		return ((ItemDefinitionGroupType) group).getCondition();
+	}
+
+	/** @return the entries of the configurations the group applies to; groups with invalid conditions apply to none */
+	private List<Entry> applicable(XmlObject group, Path directory) {
+		String condition = condition(group);
+		List<Entry> r = new ArrayList<>();
+		String config = configuration(condition);
+		if (config != null) {
+			r.add(entries.get(config));
+		} else if (condition == null) {
+			r.addAll(entries.values());
+		} else {
+			for (Map.Entry<String, Entry> e : entries.entrySet()) {
+				Boolean applies = evaluate(condition, e.getKey(), directory);
+				if (applies == null || applies) {
+					r.add(e.getValue());
+				}
+				if (applies != null && applies) {
+					e.getValue().selecting.add(group);
+				}
+			}
+		}
+		return r;
+	}
+
+	/**
+	 * Evaluate a condition for a configuration with all properties except Configuration and Platform undefined
+	 *
+	 * @return null if the condition is true but depends on other properties, false if it is false or cannot be
+	 *         evaluated, and true if it is true and depends on Configuration or Platform only
+	 */
+	private static Boolean evaluate(String condition, String config, Path directory) {
+		Function<String, String> properties = Condition.configurationProperties(config);
+		// whether Configuration or Platform and whether other properties are referenced
+		boolean[] references = new boolean[2];
+		try {
+			boolean r = Condition.parseOrFalse(condition).evaluate(name -> {
+				String value = properties.apply(name);
+				references[value != null ? 0 : 1] = true;
+				return value;
+			}, directory);
+			return !r ? Boolean.FALSE : references[1] || !references[0] ? null : Boolean.TRUE;
+		} catch (IllegalArgumentException e) {
+			// e.g., a non-numeric operand of '<'; as MSBuild would fail, the group is ignored
+			return Boolean.FALSE;
+		}
+	}
+
+	/**
+	 * @return whether a condition is true for a configuration and depends on Configuration or Platform only, e.g.,
+	 *         '$(Configuration)'=='Release' but not '$(VisualStudioVersion)'==''
+	 */
+	static boolean selects(String condition, String config, Path directory) {
+		return Boolean.TRUE.equals(evaluate(condition, config, directory));
+	}
+
+	/** @return the first group with the exact condition of the configuration or the first selecting group */
+	private static <T extends XmlObject> T primary(String config, Entry entry, List<T> groups) {
+		T fallback = null;
+		for (T group : groups) {
+			if (config.equals(configuration(condition(group)))) {
+				return group;
+			}
+			if (fallback == null && entry.selecting.contains(group)) {
+				fallback = group;
+			}
+		}
+		return fallback;
+	}
+
+	/** @return the entry for the configuration or null if the configuration is unknown */
+	Entry get(String config) {
+		return entries.get(config);
+	}
+
+	/** @return the configuration of a condition created by {@link X#configurationCondition(String)} or null */
+	static String configuration(String condition) {
+		if (condition == null || !condition.startsWith(X.CONFIGURATION_CONDITION) || !condition.endsWith("'")
+				|| condition.length() <= X.CONFIGURATION_CONDITION.length()) {
+			return null;
+		}
+		return condition.substring(X.CONFIGURATION_CONDITION.length(), condition.length() - 1);
+	}
+}
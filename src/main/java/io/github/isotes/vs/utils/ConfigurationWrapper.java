@@ -12,13 +12,17 @@ import io.github.isotes.vs.model.LinkItem;
 import io.github.isotes.vs.model.ProjectDocument;
 import io.github.isotes.vs.model.ProjectReferenceDocument;
 import io.github.isotes.vs.model.PropertyGroupType;
-import io.github.isotes.vs.model.SimpleItemType;
 
 import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 /** Wrapper to collect the elements for a configuration (e.g., Release|Win32) in C/C++ projects
+ *
+ * <p>The groups are selected by evaluating their conditions with {@link Condition}. The primary groups, e.g.,
+ * {@link #propertyGroup}, are the first groups with the exact condition of the configuration or, without one, the
+ * first other groups whose condition is true and depends on Configuration or Platform only.</p>
  *
  * <p>Note: Most fields can be null.</p>
  */
@@ -34,34 +38,42 @@ public class ConfigurationWrapper {
 	public final LinkItem lib;
 	public final LinkItem link;
 	public final ProjectReferenceDocument.ProjectReference projectReference;
+	/** All property groups that apply to the configuration including those without condition in document order */
+	public final List<PropertyGroupType> propertyGroups;
+	/** All import groups that apply to the configuration including those without condition in document order */
+	public final List<ImportGroupType> importGroups;
+	/** All item definition groups that apply to the configuration including those without condition in document order */
+	public final List<ItemDefinitionGroupType> itemDefinitionGroups;
 
 	public ConfigurationWrapper(ProjectWrapper projectWrapper, String config) {
 		this.projectWrapper = projectWrapper;
 		this.project = projectWrapper.project;
 		this.name = config;
-		propertyGroup = X.configComponent(config, project.getPropertyGroupList(), PropertyGroupType::getCondition).map(PropertyGroupWrapper::new).orElse(null);
-		importGroup = X.configComponent(config, project.getImportGroupList(), ImportGroupType::getCondition).orElse(null);
-		itemDefinitionGroup = X.configComponent(config, project.getItemDefinitionGroupList(), ItemDefinitionGroupType::getCondition).orElse(null);
-
-		ClCompileDocument.ClCompile clCompile = null;
-		LinkItem lib = null;
-		LinkItem link = null;
-		ProjectReferenceDocument.ProjectReference projectReference = null;
-		if (itemDefinitionGroup != null) {
-			link = X.optionalComponent(itemDefinitionGroup.getLinkList()).orElse(null);
-			lib = X.optionalComponent(itemDefinitionGroup.getLibList()).orElse(null);
-			for (SimpleItemType si : itemDefinitionGroup.getItemList()) {
-				if (si instanceof ClCompileDocument.ClCompile) {
-					clCompile = (ClCompileDocument.ClCompile) si;
-				} else if (si instanceof ProjectReferenceDocument.ProjectReference) {
-					projectReference = (ProjectReferenceDocument.ProjectReference) si;
-				}
-			}
+		ConfigurationIndex.Entry entry = projectWrapper.configurationIndexEntry(config);
+		if (entry == null) {
+			propertyGroup = null;
+			importGroup = null;
+			itemDefinitionGroup = null;
+			clCompile = null;
+			lib = null;
+			link = null;
+			projectReference = null;
+			propertyGroups = Collections.emptyList();
+			importGroups = Collections.emptyList();
+			itemDefinitionGroups = Collections.emptyList();
+		} else {
+			ConfigurationIndex.Items items = entry.items();
+			propertyGroup = entry.propertyGroup != null ? new PropertyGroupWrapper(entry.propertyGroup) : null;
+			importGroup = entry.importGroup;
+			itemDefinitionGroup = entry.itemDefinitionGroup;
+			clCompile = items.clCompile;
+			lib = items.lib;
+			link = items.link;
+			projectReference = items.projectReference;
+			propertyGroups = Collections.unmodifiableList(entry.propertyGroups);
+			importGroups = Collections.unmodifiableList(entry.importGroups);
+			itemDefinitionGroups = Collections.unmodifiableList(entry.itemDefinitionGroups);
 		}
-		this.clCompile = clCompile;
-		this.lib = lib;
-		this.link = link;
-		this.projectReference = projectReference;
 	}
 
 	public ListElementWrapper getPreprocessorDefinitions() {
@@ -0,0 +1,402 @@
+/*
+ * Copyright (c) 2020 Robert Sauter
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.isotes.vs.utils;
+
+import io.github.isotes.vs.model.ProjectReferenceDocument;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.ToLongFunction;
+
+/**
+ * Dependency graph of the projects in a solution
+ *
+ * <p>The graph combines the 'ProjectDependencies' sections of the solution with the 'ProjectReference' items of the
+ * project files, if they are provided. References to projects that are not part of the solution are ignored. Solution
+ * folders are not part of the graph.</p>
+ *
+ * <p>Build orders are computed once and cached until a dependency is added or removed. The transitive dependencies
+ * of a project are memoized; changing a dependency only discards the memoized results of the affected projects.
+ * This class is not thread-safe.</p>
+ */
+public class DependencyGraph {
+	public final VsSolution solution;
+	private final List<VsSolutionProject> nodes = new ArrayList<>();
+	private final Map<VsSolutionProject, Integer> ids = new HashMap<>();
+	private final List<Set<Integer>> dependencies = new ArrayList<>();
+	private final List<Set<Integer>> dependents = new ArrayList<>();
+
+	private List<Integer> order;
+	private int[] levels;
+	private BitSet[] closures;
+
+	/**
+	 * @param solution the solution providing the projects and the 'ProjectDependencies' sections
+	 * @param projects the parsed project files by GUID, e.g., {@link LoadedSolution#projects}; the 'ProjectReference'
+	 *                 items of these are added as dependencies
+	 */
+	public DependencyGraph(VsSolution solution, Map<String, ProjectWrapper> projects) {
+		this.solution = solution;
+		for (VsSolutionProject vsp : solution.projects) {
+			if (vsp.projectType() != ProjectType.SOLUTION_FOLDER && !ids.containsKey(vsp)) {
+				ids.put(vsp, nodes.size());
+				nodes.add(vsp);
+				dependencies.add(new LinkedHashSet<>());
+				dependents.add(new LinkedHashSet<>());
+			}
+		}
+		closures = new BitSet[nodes.size()];
+		Map<Path, VsSolutionProject> byPath = new HashMap<>();
+		for (VsSolutionProject vsp : nodes) {
+			byPath.putIfAbsent(normalize(vsp.path), vsp);
+		}
+		for (VsSolutionProject vsp : nodes) {
+			for (String guid : vsp.dependencies()) {
+				VsSolutionProject dependency = solution.byGuid(guid.trim());
+				if (dependency != null && dependency != vsp && ids.containsKey(dependency)) {
+					addDependency(vsp, dependency);
+				}
+			}
+			ProjectWrapper pw = projects.get(vsp.guid);
+			if (pw != null) {
+				for (ProjectReferenceDocument.ProjectReference reference : pw.projectReferences()) {
+					VsSolutionProject dependency = resolve(pw, reference, byPath);
+					if (dependency != null && dependency != vsp) {
+						addDependency(vsp, dependency);
+					}
+				}
+			}
+		}
+	}
+
+	public DependencyGraph(VsSolution solution) {
+		this(solution, Collections.emptyMap());
+	}
+
+	public DependencyGraph(LoadedSolution loadedSolution) {
+		this(loadedSolution.solution, loadedSolution.projects);
+	}
+
+	private VsSolutionProject resolve(ProjectWrapper pw, ProjectReferenceDocument.ProjectReference reference, Map<Path, VsSolutionProject> byPath) {
+		// <ProjectReference Include="..\Common\Common.vcxproj">
+		//   <Project>{7ee21c7f-0ea8-4d8b-ad28-5ec76a1da6de}</Project>
+		// </ProjectReference>
+		NodeList guids = X.childElements(reference, "Project");
+		for (int i = 0; i < guids.getLength(); i++) {
+			Node node = guids.item(i);
+			if (X.isStringElement(node)) {
+				VsSolutionProject vsp = solution.byGuid(X.string(node).trim());
+				if (vsp != null && ids.containsKey(vsp)) {
+					return vsp;
+				}
+			}
+		}
+		String include = reference.getInclude();
+		if (include == null || pw.path == null) {
+			return null;
+		}
+		return byPath.get(normalize(pw.path.getParent().resolve(include.replace('\\', '/'))));
+	}
+
+	private static Path normalize(Path path) {
+		return path.toAbsolutePath().normalize();
+	}
+
+	private int id(VsSolutionProject project) {
+		Integer id = ids.get(project);
+		if (id == null) {
+			throw new IllegalArgumentException("Project not part of the dependency graph: " + project.name);
+		}
+		return id;
+	}
+
+	private List<VsSolutionProject> projects(Iterable<Integer> ids) {
+		List<VsSolutionProject> r = new ArrayList<>();
+		for (int id : ids) {
+			r.add(nodes.get(id));
+		}
+		return r;
+	}
+
+	private List<VsSolutionProject> projects(BitSet ids) {
+		List<VsSolutionProject> r = new ArrayList<>(ids.cardinality());
+		for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+			r.add(nodes.get(id));
+		}
+		return r;
+	}
+
+	/** @return the projects of the graph in the order of the solution */
+	public List<VsSolutionProject> projects() {
+		return Collections.unmodifiableList(nodes);
+	}
+
+	/** @return the direct dependencies of the project */
+	public List<VsSolutionProject> dependencies(VsSolutionProject project) {
+		return projects(dependencies.get(id(project)));
+	}
+
+	/** @return the projects that directly depend on the project */
+	public List<VsSolutionProject> dependents(VsSolutionProject project) {
+		return projects(dependents.get(id(project)));
+	}
+
+	/** @return true if the dependency has been added, false if it was already present */
+	public boolean addDependency(VsSolutionProject project, VsSolutionProject dependency) {
+		int p = id(project);
+		int d = id(dependency);
+		if (!dependencies.get(p).add(d)) {
+			return false;
+		}
+		dependents.get(d).add(p);
+		invalidate(p);
+		return true;
+	}
+
+	/** @return true if the dependency has been removed, false if it was not present */
+	public boolean removeDependency(VsSolutionProject project, VsSolutionProject dependency) {
+		int p = id(project);
+		int d = id(dependency);
+		if (!dependencies.get(p).remove(d)) {
+			return false;
+		}
+		dependents.get(d).remove(p);
+		invalidate(p);
+		return true;
+	}
+
+	private void invalidate(int changed) {
+		order = null;
+		levels = null;
+		// memoized closures are only present if those of all dependencies are -> stop at the first one missing
+		Deque<Integer> todo = new ArrayDeque<>();
+		todo.push(changed);
+		while (!todo.isEmpty()) {
+			int n = todo.pop();
+			if (closures[n] != null) {
+				closures[n] = null;
+				for (int dependent : dependents.get(n)) {
+					todo.push(dependent);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return a dependency cycle starting and ending with the same project (each project depends on its successor)
+	 * or empty if the graph is acyclic
+	 */
+	public Optional<List<VsSolutionProject>> cycle() {
+		computeOrder();
+		if (order.size() == nodes.size()) {
+			return Optional.empty();
+		}
+		// every project not in the order has at least one dependency that is not in the order -> follow those
+		BitSet ordered = new BitSet();
+		for (int n : order) {
+			ordered.set(n);
+		}
+		int[] position = new int[nodes.size()];
+		Arrays.fill(position, -1);
+		List<Integer> path = new ArrayList<>();
+		int n = ordered.nextClearBit(0);
+		while (position[n] < 0) {
+			position[n] = path.size();
+			path.add(n);
+			for (int d : dependencies.get(n)) {
+				if (!ordered.get(d)) {
+					n = d;
+					break;
+				}
+			}
+		}
+		List<Integer> cycle = new ArrayList<>(path.subList(position[n], path.size()));
+		cycle.add(n);
+		return Optional.of(projects(cycle));
+	}
+
+	/**
+	 * @return all projects ordered such that every project comes after its dependencies; projects without an order
+	 * between them retain the order of the solution
+	 * @throws IllegalArgumentException if the dependencies contain a cycle
+	 */
+	public List<VsSolutionProject> topologicalOrder() {
+		return projects(checkedOrder());
+	}
+
+	/**
+	 * Group the projects into waves that can be built in parallel: the first wave contains the projects without
+	 * dependencies and every other project is in the wave following the latest wave of its dependencies.
+	 *
+	 * @throws IllegalArgumentException if the dependencies contain a cycle
+	 */
+	public List<List<VsSolutionProject>> waves() {
+		int[] levels = levels();
+		List<List<VsSolutionProject>> r = new ArrayList<>();
+		for (int n = 0; n < nodes.size(); n++) {
+			while (r.size() <= levels[n]) {
+				r.add(new ArrayList<>());
+			}
+			r.get(levels[n]).add(nodes.get(n));
+		}
+		return r;
+	}
+
+	/**
+	 * @param cost the cost of building a single project, e.g., the duration of the last build
+	 * @return the chain of dependent projects with the highest total cost starting with the project without
+	 * dependencies
+	 * @throws IllegalArgumentException if the dependencies contain a cycle
+	 */
+	public List<VsSolutionProject> criticalPath(ToLongFunction<VsSolutionProject> cost) {
+		long[] total = new long[nodes.size()];
+		int[] previous = new int[nodes.size()];
+		int last = -1;
+		for (int n : checkedOrder()) {
+			previous[n] = -1;
+			for (int d : dependencies.get(n)) {
+				if (previous[n] < 0 || total[d] > total[previous[n]]) {
+					previous[n] = d;
+				}
+			}
+			total[n] = cost.applyAsLong(nodes.get(n)) + (previous[n] < 0 ? 0 : total[previous[n]]);
+			if (last < 0 || total[n] > total[last]) {
+				last = n;
+			}
+		}
+		List<VsSolutionProject> r = new ArrayList<>();
+		for (int n = last; n >= 0; n = previous[n]) {
+			r.add(nodes.get(n));
+		}
+		Collections.reverse(r);
+		return r;
+	}
+
+	/** @return the longest chain of dependent projects counting each project as one */
+	public List<VsSolutionProject> criticalPath() {
+		return criticalPath(vsp -> 1);
+	}
+
+	/**
+	 * @return the direct and indirect dependencies of the project in the order of the solution
+	 * @throws IllegalArgumentException if the dependencies contain a cycle
+	 */
+	public List<VsSolutionProject> transitiveDependencies(VsSolutionProject project) {
+		return projects(closure(id(project)));
+	}
+
+	/** @return the projects that directly or indirectly depend on the project in the order of the solution */
+	public List<VsSolutionProject> transitiveDependents(VsSolutionProject project) {
+		BitSet seen = new BitSet();
+		Deque<Integer> todo = new ArrayDeque<>(dependents.get(id(project)));
+		while (!todo.isEmpty()) {
+			int n = todo.pop();
+			if (!seen.get(n)) {
+				seen.set(n);
+				todo.addAll(dependents.get(n));
+			}
+		}
+		return projects(seen);
+	}
+
+	private BitSet closure(int node) {
+		if (closures[node] != null) {
+			return closures[node];
+		}
+		checkedOrder();
+		Deque<Integer> stack = new ArrayDeque<>();
+		stack.push(node);
+		while (!stack.isEmpty()) {
+			int n = stack.peek();
+			if (closures[n] != null) {
+				stack.pop();
+				continue;
+			}
+			boolean ready = true;
+			for (int d : dependencies.get(n)) {
+				if (closures[d] == null) {
+					stack.push(d);
+					ready = false;
+				}
+			}
+			if (ready) {
+				BitSet closure = new BitSet();
+				for (int d : dependencies.get(n)) {
+					closure.set(d);
+					closure.or(closures[d]);
+				}
+				closures[n] = closure;
+				stack.pop();
+			}
+		}
+		return closures[node];
+	}
+
+	private int[] levels() {
+		if (levels == null) {
+			int[] levels = new int[nodes.size()];
+			for (int n : checkedOrder()) {
+				for (int d : dependencies.get(n)) {
+					levels[n] = Math.max(levels[n], levels[d] + 1);
+				}
+			}
+			this.levels = levels;
+		}
+		return levels;
+	}
+
+	private List<Integer> checkedOrder() {
+		computeOrder();
+		if (order.size() != nodes.size()) {
+			List<String> names = new ArrayList<>();
+			for (VsSolutionProject vsp : cycle().orElseThrow(IllegalStateException::new)) {
+				names.add(vsp.name);
+			}
+			throw new IllegalArgumentException("Dependency cycle: " + String.join(" -> ", names));
+		}
+		return order;
+	}
+
+	// Kahn's algorithm; only contains the projects not part of or depending on a cycle
+	private void computeOrder() {
+		if (order != null) {
+			return;
+		}
+		int[] missing = new int[nodes.size()];
+		PriorityQueue<Integer> ready = new PriorityQueue<>();
+		for (int n = 0; n < nodes.size(); n++) {
+			missing[n] = dependencies.get(n).size();
+			if (missing[n] == 0) {
+				ready.add(n);
+			}
+		}
+		List<Integer> order = new ArrayList<>(nodes.size());
+		while (!ready.isEmpty()) {
+			int n = ready.poll();
+			order.add(n);
+			for (int dependent : dependents.get(n)) {
+				if (--missing[dependent] == 0) {
+					ready.add(dependent);
+				}
+			}
+		}
+		this.order = order;
+	}
+}
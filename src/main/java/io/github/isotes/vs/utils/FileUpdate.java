@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2020 Robert Sauter
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.isotes.vs.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/** Internal helper to replace files only if their content changes */
+class FileUpdate {
+	private FileUpdate() {
+	}
+
+	/** Writes the content of a file */
+	interface Content {
+		void writeTo(OutputStream out) throws IOException;
+	}
+
+	/**
+	 * Write the content atomically unless the file already has exactly this content
+	 *
+	 * @return true if the file has been written
+	 */
+	static boolean writeIfChanged(Path path, byte[] content) throws IOException {
+		if (hasContent(path, content)) {
+			return false;
+		}
+		writeAtomically(path, content);
+		return true;
+	}
+
+	/** Compare the file with the content without reading the file completely into memory */
+	static boolean hasContent(Path path, byte[] content) throws IOException {
+		try {
+			if (Files.size(path) != content.length) {
+				return false;
+			}
+			try (InputStream in = Files.newInputStream(path)) {
+				byte[] buffer = new byte[8192];
+				int offset = 0;
+				int n;
+				while ((n = in.read(buffer)) > 0) {
+					if (offset + n > content.length) {
+						return false;
+					}
+					for (int i = 0; i < n; i++) {
+						if (buffer[i] != content[offset + i]) {
+							return false;
+						}
+					}
+					offset += n;
+				}
+				return offset == content.length;
+			}
+		} catch (NoSuchFileException e) {
+			return false;
+		}
+	}
+
+	/** Write the content to a temporary file in the same directory and rename it to the path */
+	static void writeAtomically(Path path, byte[] content) throws IOException {
+		writeAtomically(path, out -> out.write(content));
+	}
+
+	/** Stream the content to a temporary file in the same directory and rename it to the path */
+	static void writeAtomically(Path path, Content content) throws IOException {
+		Path absolute = path.toAbsolutePath();
+		Path temp = Files.createTempFile(absolute.getParent(), "." + absolute.getFileName(), ".tmp");
+		try {
+			try (OutputStream out = Files.newOutputStream(temp)) {
+				content.writeTo(out);
+			}
+			if (Files.exists(absolute)) {
+				try {
+					Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(absolute));
+				} catch (UnsupportedOperationException e) {
+					// not a POSIX file system
+				}
+			}
+			try {
+				Files.move(temp, absolute, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+}
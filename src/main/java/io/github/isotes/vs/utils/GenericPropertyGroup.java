@@ -6,8 +6,8 @@
 package io.github.isotes.vs.utils;
 
 import io.github.isotes.vs.model.PropertyGroupType;
+import org.w3c.dom.Element;
 import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
 import java.util.*;
 
@@ -18,53 +18,145 @@ import java.util.*;
  * example, access to custom properties in 'UserMacros' property groups. To access property groups with elements
  * specified in the MSBuild schema (using the {@link PropertyGroupType#getPropertyList()} accessor) see
  * {@link PropertyGroupWrapper}. </p>
+ *
+ * <p>Keyed access uses an index of the child elements that is built on first use and kept up to date by the
+ * modifications of this map. Appending elements through other means is detected as well; after other structural
+ * changes of the underlying XML, call {@link #invalidate()}. Iteration follows the sibling links of the DOM.</p>
  */
 public class GenericPropertyGroup extends AbstractMap<String, String> {
 
 	public final PropertyGroupType propertyGroup;
 	private final InnerSet innerSet = new InnerSet();
+	// first element for each name
+	private Map<String, Node> index;
+	// number of elements that are text nodes
+	private int indexSize;
+	private Node indexedLastChild;
 
 	public GenericPropertyGroup(PropertyGroupType propertyGroup) {
 		this.propertyGroup = propertyGroup;
 	}
 
-	private class IteratorWrapper implements Iterator<Entry<String, String>> {
-		int index;
+	private Node group() {
+		return propertyGroup.getDomNode();
+	}
 
-		public IteratorWrapper() {
-			index = -1;
-			index = nextTextElementIndex();
+	private static Node nextStringElement(Node node) {
+		while (node != null && !X.isStringElement(node)) {
+			node = node.getNextSibling();
 		}
+		return node;
+	}
 
-		// return -2 if none left
-		private int nextTextElementIndex() {
-			NodeList childNodes = propertyGroup.getDomNode().getChildNodes();
-			int length = childNodes.getLength();
-			for (int i = index + 1; i < length; i++) {
-				if (X.isStringElement(childNodes.item(i))) {
-					return i;
+	private Map<String, Node> index() {
+		Node group = group();
+		if (index == null || group.getLastChild() != indexedLastChild) {
+			Map<String, Node> index = new HashMap<>();
+			int size = 0;
+			for (Node node = group.getFirstChild(); node != null; node = node.getNextSibling()) {
+				if (node.getNodeType() == Node.ELEMENT_NODE) {
+					index.putIfAbsent(node.getNodeName(), node);
+					if (X.isStringElement(node)) {
+						size += 1;
+					}
 				}
 			}
-			return -2;
+			this.index = index;
+			this.indexSize = size;
+			this.indexedLastChild = group.getLastChild();
+		}
+		return index;
+	}
+
+	/** Discard the index of the child elements, e.g., after the underlying XML has been changed directly */
+	public void invalidate() {
+		index = null;
+	}
+
+	/** @return the first child element with the name or null */
+	private Node element(Object key) {
+		if (!(key instanceof String)) {
+			return null;
+		}
+		Node node = index().get(key);
+		if (node != null && node.getParentNode() != group()) {
+			invalidate();
+			node = index().get(key);
+		}
+		return node;
+	}
+
+	private class NodeEntry implements Entry<String, String> {
+		private final Node node;
+
+		NodeEntry(Node node) {
+			this.node = node;
+		}
+
+		@Override
+		public String getKey() {
+			return node.getNodeName();
+		}
+
+		@Override
+		public String getValue() {
+			return X.string(node);
+		}
+
+		@Override
+		public String setValue(String value) {
+			String old = X.string(node);
+			X.set(node, value);
+			return old;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Entry)) {
+				return false;
+			}
+			Entry<?, ?> e = (Entry<?, ?>) o;
+			return Objects.equals(getKey(), e.getKey()) && Objects.equals(getValue(), e.getValue());
 		}
 
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(getKey()) ^ Objects.hashCode(getValue());
+		}
+
+		@Override
+		public String toString() {
+			return getKey() + "=" + getValue();
+		}
+	}
+
+	private class IteratorWrapper implements Iterator<Entry<String, String>> {
+		private Node next = nextStringElement(group().getFirstChild());
+		private Node current;
+
 		@Override
 		public boolean hasNext() {
-			return nextTextElementIndex() >= 0;
+			return next != null;
 		}
 
 		@Override
 		public Entry<String, String> next() {
-			Node item = propertyGroup.getDomNode().getChildNodes().item(index);
-			index = nextTextElementIndex();
-			return new SimpleEntry<>(item.getNodeName(), X.string(item));
+			if (next == null) {
+				throw new NoSuchElementException();
+			}
+			current = next;
+			next = nextStringElement(next.getNextSibling());
+			return new NodeEntry(current);
 		}
 
 		@Override
 		public void remove() {
-			propertyGroup.getDomNode().removeChild(propertyGroup.getDomNode().getChildNodes().item(index));
-			index -= 1;
-			index = nextTextElementIndex();
+			if (current == null) {
+				throw new IllegalStateException();
+			}
+			group().removeChild(current);
+			current = null;
+			invalidate();
 		}
 	}
 
@@ -77,7 +169,8 @@ public class GenericPropertyGroup extends AbstractMap<String, String> {
 
 		@Override
 		public int size() {
-			return propertyGroup.sizeOfPropertyArray();
+			index();
+			return indexSize;
 		}
 	}
 
@@ -87,18 +180,58 @@ public class GenericPropertyGroup extends AbstractMap<String, String> {
 		return innerSet;
 	}
 
+	@Override
+	public int size() {
+		return innerSet.size();
+	}
+
+	@Override
+	public String get(Object key) {
+		Node node = element(key);
+		return node != null && X.isStringElement(node) ? X.string(node) : null;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		Node node = element(key);
+		return node != null && X.isStringElement(node);
+	}
+
 	@Override
 	public String put(String key, String value) {
-		NodeList childNodes = propertyGroup.getDomNode().getChildNodes();
-		int length = childNodes.getLength();
-		for (int i = 0; i < length; i++) {
-			if (childNodes.item(i).getNodeName().equals(key)) {
-				String old = X.string(childNodes.item(i));
-				X.set(childNodes.item(i), value);
+		Node node = element(key);
+		if (node != null) {
+			if (X.isStringElement(node)) {
+				String old = X.string(node);
+				if (!old.equals(value)) {
+					// writing the same value would still count as a modification of the document
+					X.set(node, value);
+				}
 				return old;
 			}
+			if (node.getFirstChild() == null) {
+				// empty element
+				node.appendChild(node.getOwnerDocument().createTextNode(value));
+				indexSize += 1;
+				return null;
+			}
 		}
-		X.addStringElement(propertyGroup, key, value);
+		Element element = X.addStringElement(propertyGroup, key, value);
+		index.putIfAbsent(key, element);
+		indexSize += 1;
+		indexedLastChild = element;
 		return null;
 	}
+
+	@Override
+	public String remove(Object key) {
+		Node node = element(key);
+		if (node == null || !X.isStringElement(node)) {
+			return null;
+		}
+		String old = X.string(node);
+		group().removeChild(node);
+		invalidate();
+		return old;
+	}
 }
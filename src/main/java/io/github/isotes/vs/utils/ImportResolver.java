@@ -0,0 +1,315 @@
+/*
+ * Copyright (c) 2020 Robert Sauter
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.isotes.vs.utils;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.io.File;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Follows the Import elements of projects and the files they import, e.g., .props property sheets
+ *
+ * <p>Each imported file is parsed once into an immutable {@link PropertySheet} that is cached by this resolver and
+ * shared by all projects, i.e., a resolver should be used for a whole workspace. If multiple threads request the same
+ * file at once, it is parsed by the first one while the others wait for the result. The cache is not updated when
+ * files change; use a new resolver instead.</p>
+ *
+ * <p>For a configuration, the property groups and imports of the project and of each imported file are processed in
+ * document order and nested imports are followed depth-first. The Project attributes and conditions of the imports are
+ * expanded with the properties defined so far, i.e., a later definition overrides an earlier one regardless of whether
+ * it is in the project or an imported file. Properties that have not been defined so far are taken from the project,
+ * see {@link PropertyEvaluator}. Conditions on individual properties are not evaluated. Paths are resolved against
+ * the directory of the importing file; Project attributes with wildcards or multiple files are not supported.</p>
+ */
+public class ImportResolver {
+	/** An import whose conditions are true for the configuration */
+	public static class ResolvedImport {
+		/** The file with the Import element */
+		public final Path importer;
+		/** The unexpanded Project attribute */
+		public final String project;
+		/** 0 for the imports of the project, 1 for the imports of those files, etc. */
+		public final int depth;
+		/** The expanded and normalized path or null if it is invalid */
+		public final Path path;
+		/** The content of the imported file or null if it could not be read */
+		public final PropertySheet sheet;
+		/** The reason why the file could not be read or null */
+		public final RuntimeException failure;
+
+		private ResolvedImport(Path importer, String project, int depth, Path path, PropertySheet sheet, RuntimeException failure) {
+			this.importer = importer;
+			this.project = project;
+			this.depth = depth;
+			this.path = path;
+			this.sheet = sheet;
+			this.failure = failure;
+		}
+
+		@Override
+		public String toString() {
+			return project + " -> " + path;
+		}
+	}
+
+	/** The resolved imports of a project configuration */
+	public static class Chain {
+		public final ProjectWrapper project;
+		public final String configuration;
+		/** The imports in the order MSBuild would process them */
+		public final List<ResolvedImport> imports;
+		/**
+		 * The expanded values of the properties defined by the applicable property groups of the imported files, which
+		 * are overridden by later definitions of the project
+		 */
+		public final Map<String, String> properties;
+
+		private Chain(ProjectWrapper project, String configuration, List<ResolvedImport> imports, Map<String, String> properties) {
+			this.project = project;
+			this.configuration = configuration;
+			this.imports = Collections.unmodifiableList(imports);
+			this.properties = Collections.unmodifiableMap(properties);
+		}
+	}
+
+	private final Map<String, String> globalProperties;
+	private final ConcurrentHashMap<Path, CompletableFuture<PropertySheet>> sheets = new ConcurrentHashMap<>();
+
+	/** @param globalProperties properties that override all definitions, e.g., SolutionDir */
+	public ImportResolver(Map<String, String> globalProperties) {
+		this.globalProperties = new HashMap<>();
+		for (Map.Entry<String, String> e : globalProperties.entrySet()) {
+			this.globalProperties.put(e.getKey().toLowerCase(Locale.ROOT), e.getValue());
+		}
+	}
+
+	public ImportResolver() {
+		this(Collections.emptyMap());
+	}
+
+	/**
+	 * Get the parsed file from the cache or parse it
+	 *
+	 * @param path the imported file
+	 * @throws IllegalArgumentException if the file cannot be read or parsed, also for later calls
+	 */
+	public PropertySheet sheet(Path path) {
+		Path key = path.toAbsolutePath().normalize();
+		CompletableFuture<PropertySheet> future = sheets.get(key);
+		if (future == null) {
+			CompletableFuture<PropertySheet> created = new CompletableFuture<>();
+			future = sheets.putIfAbsent(key, created);
+			if (future == null) {
+				future = created;
+				try {
+					created.complete(PropertySheet.read(key));
+				} catch (RuntimeException e) {
+					created.completeExceptionally(e);
+				}
+			}
+		}
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+		}
+	}
+
+	/** @return the number of files in the cache including those that could not be read */
+	public int size() {
+		return sheets.size();
+	}
+
+	/** @return the import chains of all configurations of the project by configuration name */
+	public Map<String, Chain> resolve(ProjectWrapper project) {
+		Map<String, Chain> r = new LinkedHashMap<>();
+		for (ProjectConfiguration pc : project.configurations()) {
+			r.put(pc.name, resolve(project, pc.name));
+		}
+		return r;
+	}
+
+	/**
+	 * Resolve the imports of a project configuration
+	 *
+	 * @param project the project
+	 * @param configuration the configuration, e.g., Release|x64
+	 */
+	public Chain resolve(ProjectWrapper project, String configuration) {
+		return new Resolution(project, configuration).resolve();
+	}
+
+	/** The state of resolving the imports of a single configuration */
+	private class Resolution {
+		private final ProjectWrapper project;
+		private final String configuration;
+		private final PropertyEvaluator evaluator;
+		private final List<ResolvedImport> imports = new ArrayList<>();
+		// the properties defined so far by lower case name
+		private final Map<String, String> values = new HashMap<>();
+		// the names of the properties defined by the imported files
+		private final Map<String, String> names = new LinkedHashMap<>();
+		// the files being processed to skip circular imports
+		private final Set<Path> processing = new HashSet<>();
+
+		Resolution(ProjectWrapper project, String configuration) {
+			this.project = project;
+			this.configuration = configuration;
+			this.evaluator = new PropertyEvaluator(project, configuration, globalProperties);
+		}
+
+		Chain resolve() {
+			Path file = project.path != null ? project.path.toAbsolutePath().normalize() : Paths.get("").toAbsolutePath().resolve("project");
+			processing.add(file);
+			Function<String, String> properties = properties(file);
+			for (Node child = project.project.getDomNode().getFirstChild(); child != null; child = child.getNextSibling()) {
+				if (child.getNodeType() != Node.ELEMENT_NODE) {
+					continue;
+				}
+				if (child.getLocalName().equals("PropertyGroup")) {
+					if (applies(attribute(child, "Condition"), properties, file)) {
+						define(ProjectSnapshot.elements(child), properties);
+					}
+				} else if (child.getLocalName().equals("Import")) {
+					if (applies(attribute(child, "Condition"), properties, file)) {
+						follow(file, attribute(child, "Project"), 0);
+					}
+				} else if (child.getLocalName().equals("ImportGroup") && applies(attribute(child, "Condition"), properties, file)) {
+					for (Node node = child.getFirstChild(); node != null; node = node.getNextSibling()) {
+						if (node.getNodeType() == Node.ELEMENT_NODE && node.getLocalName().equals("Import")
+								&& applies(attribute(node, "Condition"), properties, file)) {
+							follow(file, attribute(node, "Project"), 0);
+						}
+					}
+				}
+			}
+			Map<String, String> r = new LinkedHashMap<>();
+			for (Map.Entry<String, String> e : names.entrySet()) {
+				r.put(e.getValue(), values.get(e.getKey()));
+			}
+			return new Chain(project, configuration, imports, r);
+		}
+
+		private String attribute(Node node, String name) {
+			Element element = (Element) node;
+			return element.hasAttribute(name) ? element.getAttribute(name) : null;
+		}
+
+		/** @return the lookup of the properties for expressions in the file */
+		private Function<String, String> properties(Path file) {
+			return name -> {
+				String key = name.toLowerCase(Locale.ROOT);
+				switch (key) {
+					case "msbuildthisfiledirectory":
+						return file.getParent().toString() + File.separator;
+					case "msbuildthisfile":
+						return file.getFileName().toString();
+					case "msbuildthisfilefullpath":
+						return file.toString();
+					default:
+						break;
+				}
+				String value = globalProperties.get(key);
+				if (value == null) {
+					value = values.get(key);
+				}
+				return value != null ? value : evaluator.get(name);
+			};
+		}
+
+		private boolean applies(String condition, Function<String, String> properties, Path file) {
+			try {
+				return Condition.parseOrFalse(condition).evaluate(properties, file.getParent());
+			} catch (IllegalArgumentException e) {
+				// unsupported conditions are treated as false
+				return false;
+			}
+		}
+
+		private void follow(Path importer, String project, int depth) {
+			if (project == null) {
+				return;
+			}
+			String expanded = PropertyEvaluator.Template.parse(project).expand(properties(importer)).trim();
+			if (expanded.isEmpty()) {
+				return;
+			}
+			Path path;
+			try {
+				path = importer.getParent().resolve(expanded.replace('\\', File.separatorChar)).normalize();
+			} catch (InvalidPathException e) {
+				imports.add(new ResolvedImport(importer, project, depth, null, null,
+						new IllegalArgumentException("Invalid import " + expanded + ": " + e.getMessage(), e)));
+				return;
+			}
+			if (processing.contains(path)) {
+				// circular import
+				return;
+			}
+			PropertySheet sheet = null;
+			RuntimeException failure = null;
+			try {
+				sheet = sheet(path);
+			} catch (RuntimeException e) {
+				failure = e;
+			}
+			imports.add(new ResolvedImport(importer, project, depth, path, sheet, failure));
+			if (sheet != null) {
+				processing.add(path);
+				process(sheet, depth + 1);
+				processing.remove(path);
+			}
+		}
+
+		/** @return the names of the defined properties */
+		private Iterable<String> define(Map<String, String> group, Function<String, String> properties) {
+			for (Map.Entry<String, String> e : group.entrySet()) {
+				values.put(e.getKey().toLowerCase(Locale.ROOT), PropertyEvaluator.Template.parse(e.getValue()).expand(properties));
+			}
+			return group.keySet();
+		}
+
+		/** Process the property groups and imports of the file in document order */
+		private void process(PropertySheet sheet, int depth) {
+			Function<String, String> properties = properties(sheet.path);
+			int g = 0;
+			int i = 0;
+			while (g < sheet.propertyGroups.size() || i < sheet.imports.size()) {
+				if (i >= sheet.imports.size() || (g < sheet.propertyGroups.size()
+						&& sheet.propertyGroups.get(g).position < sheet.imports.get(i).position)) {
+					PropertySheet.PropertyGroup group = sheet.propertyGroups.get(g++);
+					if (applies(group.condition, properties, sheet.path)) {
+						for (String name : define(group.properties, properties)) {
+							names.putIfAbsent(name.toLowerCase(Locale.ROOT), name);
+						}
+					}
+				} else {
+					PropertySheet.Import anImport = sheet.imports.get(i++);
+					if (applies(anImport.groupCondition, properties, sheet.path) && applies(anImport.condition, properties, sheet.path)) {
+						follow(sheet.path, anImport.project, depth);
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,343 @@
+/*
+ * Copyright (c) 2020 Robert Sauter
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.isotes.vs.utils;
+
+import io.github.isotes.vs.model.ItemGroupType;
+import io.github.isotes.vs.model.SimpleItemType;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Index of the items of the item groups of one or more projects, e.g., ClCompile, ClInclude, or None
+ *
+ * <p>The items are indexed by type and by their normalized path: the Include attribute resolved against the
+ * directory of the project with '/' as separator, '.' and '..' segments removed, and converted to lower case like
+ * paths on Windows. The paths are kept in a sorted map, so that prefix and glob queries only visit the matching
+ * range. Query paths and patterns are normalized the same way and relative ones are resolved against the base
+ * directory of the index. Results are ordered by path and then by the order of the projects and items.</p>
+ *
+ * <p>Use {@link #add(ProjectWrapper, String, String)} and {@link #remove(Item)} to modify the items of the projects
+ * and the index together. After other changes to the item groups of the projects, create a new index.</p>
+ */
+public class ItemIndex {
+	/** An item of a project */
+	public static class Item {
+		public final ProjectWrapper project;
+		/** The item type, i.e., the element name */
+		public final String type;
+		/** The Include attribute or null if there is none */
+		public final String include;
+		/** The normalized path */
+		public final String path;
+		public final Node node;
+
+		private Item(ProjectWrapper project, String type, String include, String path, Node node) {
+			this.project = project;
+			this.type = type;
+			this.include = include;
+			this.path = path;
+			this.node = node;
+		}
+
+		/** @return the text of the metadata elements of the item by name, e.g., ExcludedFromBuild */
+		public Map<String, String> metadata() {
+			return ProjectSnapshot.elements(node);
+		}
+
+		@Override
+		public String toString() {
+			return type + " " + include;
+		}
+	}
+
+	/** The normalized base directory of relative query paths */
+	public final String base;
+	private final Map<ProjectWrapper, String> projectDirectories = new LinkedHashMap<>();
+	private final TreeMap<String, List<Item>> byPath = new TreeMap<>();
+	private final Map<String, List<Item>> byType = new LinkedHashMap<>();
+	private final Map<String, List<Item>> byExtension = new HashMap<>();
+
+	/**
+	 * @param baseDirectory the directory relative query paths are resolved against
+	 * @param projects the projects to index
+	 */
+	public ItemIndex(Path baseDirectory, Collection<ProjectWrapper> projects) {
+		this.base = normalize("", baseDirectory.toAbsolutePath().toString());
+		for (ProjectWrapper pw : projects) {
+			String directory = pw.path != null ? normalize("", pw.path.toAbsolutePath().getParent().toString()) : "";
+			projectDirectories.put(pw, directory);
+			for (ItemGroupType itemGroup : pw.project.getItemGroupList()) {
+				for (SimpleItemType item : itemGroup.getItemList()) {
+					index(new Item(pw, X.elementName(item), item.getInclude(), normalize(directory, item.getInclude()), item.getDomNode()));
+				}
+			}
+		}
+	}
+
+	/** Index the items of a project with the project directory as base directory */
+	public ItemIndex(ProjectWrapper project) {
+		this(project.path != null ? project.path.toAbsolutePath().getParent() : Paths.get(""), Collections.singletonList(project));
+	}
+
+	/** Index the items of all loaded projects of a solution with the solution directory as base directory */
+	public ItemIndex(LoadedSolution loaded) {
+		this(loaded.solution.path.toAbsolutePath().getParent(), loaded.projects.values());
+	}
+
+	/** @return the items of the type in the order of the projects and items */
+	public List<Item> byType(String type) {
+		return Collections.unmodifiableList(byType.getOrDefault(type, Collections.emptyList()));
+	}
+
+	/** @return the items with the path */
+	public List<Item> byPath(String path) {
+		return Collections.unmodifiableList(byPath.getOrDefault(normalize(base, path), Collections.emptyList()));
+	}
+
+	/** @return the items of the file */
+	public List<Item> byPath(Path file) {
+		return byPath(file.toAbsolutePath().toString());
+	}
+
+	/** @return the projects with an item of the file, e.g., to find the projects compiling a source file */
+	public List<ProjectWrapper> projects(Path file) {
+		Set<ProjectWrapper> r = new LinkedHashSet<>();
+		for (Item item : byPath(file)) {
+			r.add(item.project);
+		}
+		return new ArrayList<>(r);
+	}
+
+	/**
+	 * @param prefix the start of the normalized paths; use a trailing separator to match the content of a directory
+	 * @return the items whose path starts with the prefix
+	 */
+	public List<Item> startingWith(String prefix) {
+		String p = normalize(base, prefix);
+		if ((prefix.endsWith("/") || prefix.endsWith("\\")) && !p.endsWith("/")) {
+			p += "/";
+		}
+		return flatten(byPath.subMap(p, true, p + Character.MAX_VALUE, false).values());
+	}
+
+	/** @param extension the file extension with or without leading '.', e.g., 'cpp' */
+	public List<Item> withExtension(String extension) {
+		String ext = extension.startsWith(".") ? extension.substring(1) : extension;
+		List<Item> items = byExtension.getOrDefault(ext.toLowerCase(Locale.ROOT), Collections.emptyList());
+		List<Item> r = new ArrayList<>(items);
+		r.sort((a, b) -> a.path.compareTo(b.path));
+		return r;
+	}
+
+	/**
+	 * Find items with a glob pattern: '*' and '?' match within a path segment, '**' across segments, e.g.,
+	 * 'src/**&#47;*.cpp'
+	 *
+	 * @return the items whose path matches the pattern
+	 */
+	public List<Item> glob(String pattern) {
+		String p = normalize(base, pattern);
+		int wildcard = 0;
+		while (wildcard < p.length() && p.charAt(wildcard) != '*' && p.charAt(wildcard) != '?') {
+			wildcard++;
+		}
+		String literal = p.substring(0, wildcard);
+		Pattern regex = globPattern(p);
+		List<Item> r = new ArrayList<>();
+		for (Map.Entry<String, List<Item>> e : byPath.subMap(literal, true, literal + Character.MAX_VALUE, false).entrySet()) {
+			if (regex.matcher(e.getKey()).matches()) {
+				r.addAll(e.getValue());
+			}
+		}
+		return r;
+	}
+
+	/** @return all items ordered by path */
+	public List<Item> items() {
+		return flatten(byPath.values());
+	}
+
+	/**
+	 * Add an item to a project of the index
+	 *
+	 * <p>The item is appended to the item group of the last item of the same type or to a new item group after the
+	 * last one of the project.</p>
+	 *
+	 * @param project the project, which must be part of the index
+	 * @param type the item type, e.g., ClCompile
+	 * @param include the path of the item as written to the Include attribute
+	 * @return the new item
+	 */
+	public Item add(ProjectWrapper project, String type, String include) {
+		String directory = projectDirectories.get(project);
+		if (directory == null) {
+			throw new IllegalArgumentException("Project " + project.path + " is not part of the index");
+		}
+		Node itemGroup = null;
+		List<Item> sameType = byType.getOrDefault(type, Collections.emptyList());
+		for (int i = sameType.size() - 1; i >= 0 && itemGroup == null; i--) {
+			if (sameType.get(i).project == project) {
+				itemGroup = sameType.get(i).node.getParentNode();
+			}
+		}
+		if (itemGroup == null) {
+			itemGroup = newItemGroup(project);
+		}
+		Element element = X.addElement(itemGroup, type, Collections.singletonMap("Include", include));
+		Item item = new Item(project, type, include, normalize(directory, include), element);
+		index(item);
+		return item;
+	}
+
+	/**
+	 * Remove an item from its project and the index
+	 *
+	 * @return false if the item is not part of the index
+	 */
+	public boolean remove(Item item) {
+		List<Item> items = byPath.get(item.path);
+		if (items == null || !removeIdentical(items, item)) {
+			return false;
+		}
+		if (items.isEmpty()) {
+			byPath.remove(item.path);
+		}
+		removeIdentical(byType.get(item.type), item);
+		List<Item> sameExtension = byExtension.get(extension(item.path));
+		if (sameExtension != null) {
+			removeIdentical(sameExtension, item);
+		}
+		item.node.getParentNode().removeChild(item.node);
+		return true;
+	}
+
+	private void index(Item item) {
+		byPath.computeIfAbsent(item.path, k -> new ArrayList<>()).add(item);
+		byType.computeIfAbsent(item.type, k -> new ArrayList<>()).add(item);
+		String extension = extension(item.path);
+		if (extension != null) {
+			byExtension.computeIfAbsent(extension, k -> new ArrayList<>()).add(item);
+		}
+	}
+
+	private static boolean removeIdentical(List<Item> items, Item item) {
+		for (int i = 0; i < items.size(); i++) {
+			if (items.get(i) == item) {
+				items.remove(i);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static Node newItemGroup(ProjectWrapper project) {
+		List<ItemGroupType> itemGroups = project.project.getItemGroupList();
+		if (itemGroups.isEmpty()) {
+			return project.project.addNewItemGroup().getDomNode();
+		}
+		Node last = itemGroups.get(itemGroups.size() - 1).getDomNode();
+		Node itemGroup = last.getOwnerDocument().createElementNS(last.getNamespaceURI(), "ItemGroup");
+		return last.getParentNode().insertBefore(itemGroup, last.getNextSibling());
+	}
+
+	private static List<Item> flatten(Collection<List<Item>> lists) {
+		List<Item> r = new ArrayList<>();
+		for (List<Item> items : lists) {
+			r.addAll(items);
+		}
+		return r;
+	}
+
+	/** @return the lower case extension of the last segment of a normalized path or null if there is none */
+	private static String extension(String path) {
+		int dot = path.lastIndexOf('.');
+		return dot < 0 || dot < path.lastIndexOf('/') ? null : path.substring(dot + 1);
+	}
+
+	/**
+	 * Normalize a path independent of the platform: '\' is replaced by '/', relative paths are resolved against the
+	 * directory, '.' and '..' segments are removed, and the result is converted to lower case
+	 *
+	 * @param directory an already normalized directory
+	 * @param path the path to normalize; null is treated as empty path
+	 */
+	static String normalize(String directory, String path) {
+		String p = path != null ? path.trim().replace('\\', '/') : "";
+		boolean absolute = p.startsWith("/") || (p.length() >= 2 && p.charAt(1) == ':' && Character.isLetter(p.charAt(0)));
+		if (!absolute && !directory.isEmpty()) {
+			p = directory + "/" + p;
+		}
+		// keep the root of UNC paths, i.e., '//server'
+		String root = p.startsWith("//") ? "//" : p.startsWith("/") ? "/" : "";
+		Deque<String> segments = new ArrayDeque<>();
+		for (String segment : p.substring(root.length()).split("/")) {
+			if (segment.isEmpty() || segment.equals(".")) {
+				continue;
+			}
+			if (!segment.equals("..")) {
+				segments.addLast(segment);
+			} else if (!segments.isEmpty() && !segments.peekLast().equals("..")) {
+				segments.removeLast();
+			} else if (root.isEmpty()) {
+				// the parent of the root is the root, but leading '..' of relative paths are kept
+				segments.addLast(segment);
+			}
+		}
+		return (root + String.join("/", segments)).toLowerCase(Locale.ROOT);
+	}
+
+	/** Convert a normalized glob pattern into a regular expression */
+	private static Pattern globPattern(String glob) {
+		StringBuilder regex = new StringBuilder();
+		StringBuilder literal = new StringBuilder();
+		for (int i = 0; i < glob.length(); i++) {
+			char c = glob.charAt(i);
+			if (c != '*' && c != '?') {
+				literal.append(c);
+				continue;
+			}
+			if (literal.length() > 0) {
+				regex.append(Pattern.quote(literal.toString()));
+				literal.setLength(0);
+			}
+			if (c == '?') {
+				regex.append("[^/]");
+			} else if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+				i++;
+				if (i + 1 < glob.length() && glob.charAt(i + 1) == '/') {
+					// '**/' also matches no directory
+					i++;
+					regex.append("(?:.*/)?");
+				} else {
+					regex.append(".*");
+				}
+			} else {
+				regex.append("[^/]*");
+			}
+		}
+		if (literal.length() > 0) {
+			regex.append(Pattern.quote(literal.toString()));
+		}
+		return Pattern.compile(regex.toString());
+	}
+}
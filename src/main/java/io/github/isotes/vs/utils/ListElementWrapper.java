@@ -5,46 +5,124 @@
 
 package io.github.isotes.vs.utils;
 
+import org.apache.xmlbeans.XmlCursor;
 import org.apache.xmlbeans.XmlObject;
 
 import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.regex.Pattern;
 
 /**
  * Wrapper to access a string element that represents a (usually) semicolon-separated list as a {@link List}&lt;String&gt;
+ *
+ * <p>The parsed list is cached as long as the value of the underlying element does not change; a change stamp of the
+ * document avoids reading the value again for each access, e.g., while iterating. Each modification writes the
+ * complete value back to the model. To apply several modifications with a single write, use {@link #edit(Consumer)}
+ * or the bulk operations, e.g., {@link #addAll(Collection)}, {@link #removeIf(Predicate)}, {@link #sort(Comparator)}
+ * or {@link #dedupe()}.</p>
  */
 public class ListElementWrapper extends AbstractList<String> {
 	private final List<XmlObject> element;
-	private final String delimiterRegex;
+	private final Pattern delimiter;
 	private final String joinDelimiter;
+	private String cachedValue;
+	private List<String> cachedList;
+	// detects modifications of the document since the value has been read or null if there is no element
+	private XmlCursor.ChangeStamp cachedStamp;
 
-	public ListElementWrapper(List<XmlObject> element, String delimiterRegex, String joinDelimiter) {
+	public ListElementWrapper(List<XmlObject> element, Pattern delimiter, String joinDelimiter) {
 		this.element = element;
-		this.delimiterRegex = delimiterRegex;
+		this.delimiter = delimiter;
 		this.joinDelimiter = joinDelimiter;
 	}
 
+	public ListElementWrapper(List<XmlObject> element, String delimiterRegex, String joinDelimiter) {
+		this(element, Pattern.compile(delimiterRegex), joinDelimiter);
+	}
+
 	public ListElementWrapper(List<XmlObject> element) {
-		this(element, "\\s*;\\s*", ";");
+		this(element, X.LIST_DELIMITER, ";");
+	}
+
+	private List<String> parsed() {
+		if (cachedStamp != null && !cachedStamp.hasChanged()) {
+			return cachedList;
+		}
+		String value = X.string(element).orElse("");
+		if (!value.equals(cachedValue)) {
+			cachedList = Arrays.asList(delimiter.split(value));
+			cachedValue = value;
+		}
+		cachedStamp = stamp();
+		return cachedList;
+	}
+
+	private XmlCursor.ChangeStamp stamp() {
+		return element.isEmpty() ? null : X.changeStamp(element.get(element.size() - 1));
 	}
 
 	private void store(List<String> list) {
-		X.set(element, list, joinDelimiter);
+		store(String.join(joinDelimiter, list));
+	}
+
+	private void store(String value) {
+		X.set(element, value);
+		// parse again instead of copying the list: entries may contain the delimiter or trailing entries may be empty
+		cachedList = Arrays.asList(delimiter.split(value));
+		cachedValue = value;
+		cachedStamp = stamp();
 	}
 
 	private ArrayList<String> load() {
-		return new ArrayList<>(X.list(element, delimiterRegex));
+		return new ArrayList<>(parsed());
+	}
+
+	/**
+	 * Applies the modifications of the consumer to a copy of the list and writes the result back to the model once
+	 *
+	 * @param edits modifications of the list
+	 * @return whether the list has been changed
+	 */
+	public boolean edit(Consumer<List<String>> edits) {
+		List<String> list = load();
+		edits.accept(list);
+		String value = String.join(joinDelimiter, list);
+		if (value.equals(cachedValue)) {
+			return false;
+		}
+		store(value);
+		return true;
+	}
+
+	/**
+	 * Removes duplicate entries while keeping the first occurrence of each
+	 *
+	 * @return whether the list has been changed
+	 */
+	public boolean dedupe() {
+		return edit(list -> {
+			LinkedHashSet<String> unique = new LinkedHashSet<>(list);
+			list.clear();
+			list.addAll(unique);
+		});
 	}
 
 	@Override
 	public String get(int index) {
-		return X.string(element).orElse("").split(delimiterRegex)[index];
+		return parsed().get(index);
 	}
 
 	@Override
 	public int size() {
-		return X.string(element).orElse("").split(delimiterRegex).length;
+		return parsed().size();
 	}
 
 	@Override
@@ -69,4 +147,51 @@ public class ListElementWrapper extends AbstractList<String> {
 		store(list);
 		return removed;
 	}
+
+	@Override
+	public boolean addAll(Collection<? extends String> c) {
+		return !c.isEmpty() && edit(list -> list.addAll(c));
+	}
+
+	@Override
+	public boolean addAll(int index, Collection<? extends String> c) {
+		rangeCheckForAdd(index);
+		return !c.isEmpty() && edit(list -> list.addAll(index, c));
+	}
+
+	@Override
+	public boolean removeIf(Predicate<? super String> filter) {
+		return edit(list -> list.removeIf(filter));
+	}
+
+	@Override
+	public boolean removeAll(Collection<?> c) {
+		return edit(list -> list.removeAll(c));
+	}
+
+	@Override
+	public boolean retainAll(Collection<?> c) {
+		return edit(list -> list.retainAll(c));
+	}
+
+	@Override
+	public void replaceAll(UnaryOperator<String> operator) {
+		edit(list -> list.replaceAll(operator));
+	}
+
+	@Override
+	public void sort(Comparator<? super String> c) {
+		edit(list -> list.sort(c));
+	}
+
+	@Override
+	protected void removeRange(int fromIndex, int toIndex) {
+		edit(list -> list.subList(fromIndex, toIndex).clear());
+	}
+
+	private void rangeCheckForAdd(int index) {
+		if (index < 0 || index > size()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		}
+	}
 }
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2020 Robert Sauter
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.isotes.vs.utils;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A solution together with the parsed project files of all of its projects
+ *
+ * <p>The project files are parsed concurrently on a bounded {@link java.util.concurrent.ForkJoinPool}. A project
+ * that cannot be read or parsed does not abort loading the others: its exception is recorded in {@link #failures}
+ * instead. Solution folders are skipped as they do not refer to a project file.</p>
+ *
+ * <p>To reuse already parsed projects, pass {@link ProjectCache#get(Path)} as loader.</p>
+ */
+public class LoadedSolution {
+	public final VsSolution solution;
+	/** The successfully parsed projects by GUID in the order of the solution */
+	public final Map<String, ProjectWrapper> projects;
+	/** The exceptions of projects that could not be loaded by GUID in the order of the solution */
+	public final Map<String, RuntimeException> failures;
+
+	/**
+	 * @param solution the solution
+	 * @param parallelism the maximum number of projects loaded concurrently
+	 * @param loader the function to load a project, e.g., {@code ProjectWrapper::new}
+	 */
+	public LoadedSolution(VsSolution solution, int parallelism, Function<Path, ProjectWrapper> loader) {
+		this.solution = solution;
+		List<VsSolutionProject> vsps = new ArrayList<>();
+		for (VsSolutionProject vsp : solution.projects) {
+			if (vsp.projectType() != ProjectType.SOLUTION_FOLDER) {
+				vsps.add(vsp);
+			}
+		}
+		List<Object> results = Parallel.map(vsps, parallelism, vsp -> {
+			try {
+				return loader.apply(vsp.path);
+			} catch (RuntimeException e) {
+				return e;
+			}
+		});
+		Map<String, ProjectWrapper> projects = new LinkedHashMap<>();
+		Map<String, RuntimeException> failures = new LinkedHashMap<>();
+		for (int i = 0; i < vsps.size(); i++) {
+			Object result = results.get(i);
+			if (result instanceof ProjectWrapper) {
+				projects.put(vsps.get(i).guid, (ProjectWrapper) result);
+			} else {
+				failures.put(vsps.get(i).guid, (RuntimeException) result);
+			}
+		}
+		this.projects = Collections.unmodifiableMap(projects);
+		this.failures = Collections.unmodifiableMap(failures);
+	}
+
+	public LoadedSolution(VsSolution solution, int parallelism) {
+		this(solution, parallelism, ProjectWrapper::new);
+	}
+
+	public LoadedSolution(VsSolution solution) {
+		this(solution, Parallel.defaultParallelism());
+	}
+
+	/** @return the parsed project file of the solution project or null if it has not been loaded */
+	public ProjectWrapper get(VsSolutionProject project) {
+		return projects.get(project.guid);
+	}
+}
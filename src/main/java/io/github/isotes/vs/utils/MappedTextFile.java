@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2020 Robert Sauter
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.isotes.vs.utils;
+
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read a text file via NIO and detect newline and optional UTF-8 BOM without intermediate copies
+ *
+ * <p>In contrast to {@link TextFile}, the bytes are not copied to the heap for large files: they are memory-mapped
+ * and decoded directly into the {@link #content} buffer, which parsers can consume via {@link #reader()} without
+ * another copy. Smaller files are read into a heap buffer as mapping has a higher fixed cost. Note that the mapping
+ * is only released when the buffer is garbage collected, which prevents replacing the file on Windows until then.</p>
+ */
+public class MappedTextFile {
+	/** Files of at least this size are memory-mapped by default */
+	public static final long DEFAULT_MAP_THRESHOLD = 1 << 20;
+
+	public final Path path;
+	public final Charset charset;
+	/** The decoded content without BOM from position 0 to the limit; use a {@link CharBuffer#duplicate()} to read it */
+	public final CharBuffer content;
+	public final String newline;
+	public final boolean hasBom;
+
+	/**
+	 * @param path the file to read
+	 * @param charset the charset used to decode the content
+	 * @param mapThreshold the minimum size of files that are memory-mapped instead of read
+	 */
+	public MappedTextFile(Path path, Charset charset, long mapThreshold) {
+		this.path = path;
+		this.charset = charset;
+		ByteBuffer bytes = read(path, mapThreshold);
+		this.hasBom = bytes.remaining() >= 3 && bytes.get(0) == (byte) 0xef && bytes.get(1) == (byte) 0xbb && bytes.get(2) == (byte) 0xbf;
+		if (hasBom) {
+			bytes.position(3);
+		}
+		CharsetDecoder decoder = charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		CharBuffer chars;
+		try {
+			chars = decoder.decode(bytes);
+		} catch (CharacterCodingException e) {
+			// not thrown with REPLACE
+			throw new IllegalArgumentException("Decoding " + path + " failed: " + e.getMessage(), e);
+		}
+		this.content = chars;
+		this.newline = newline(chars);
+	}
+
+	public MappedTextFile(Path path, Charset charset) {
+		this(path, charset, DEFAULT_MAP_THRESHOLD);
+	}
+
+	public MappedTextFile(Path path) {
+		this(path, StandardCharsets.UTF_8);
+	}
+
+	/** @return a reader of the content that does not copy it */
+	public Reader reader() {
+		return new CharArrayReader(content.array(), content.arrayOffset(), content.limit());
+	}
+
+	@Override
+	public String toString() {
+		return content.toString();
+	}
+
+	private static String newline(CharBuffer chars) {
+		int n = chars.limit();
+		for (int i = 0; i < n; i++) {
+			if (chars.get(i) == '\n') {
+				return (i > 0 && chars.get(i - 1) == '\r') ? "\r\n" : "\n";
+			}
+		}
+		return "\n";
+	}
+
+	private static ByteBuffer read(Path path, long mapThreshold) {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size >= mapThreshold) {
+				return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			}
+			ByteBuffer buffer = ByteBuffer.allocate((int) size);
+			while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+				// read until the buffer is full
+			}
+			buffer.flip();
+			return buffer;
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Reading " + path + " failed: " + e.getMessage(), e);
+		}
+	}
+}
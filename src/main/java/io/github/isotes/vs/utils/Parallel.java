@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2020 Robert Sauter
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.isotes.vs.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+
+/** Internal helper to run independent tasks on a bounded, dedicated {@link ForkJoinPool} */
+class Parallel {
+	private Parallel() {
+	}
+
+	static int defaultParallelism() {
+		return Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * Apply the function to all inputs using at most {@code parallelism} threads
+	 *
+	 * <p>Exceptions thrown by the function are propagated after all tasks have been submitted; callers that want to
+	 * collect failures per input should catch them in the function.</p>
+	 *
+	 * @return the results in the order of the inputs
+	 */
+	static <T, R> List<R> map(List<T> inputs, int parallelism, Function<T, R> function) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+		}
+		List<R> r = new ArrayList<>(inputs.size());
+		if (parallelism == 1 || inputs.size() <= 1) {
+			for (T input : inputs) {
+				r.add(function.apply(input));
+			}
+			return r;
+		}
+		ForkJoinPool pool = new ForkJoinPool(Math.min(parallelism, inputs.size()));
+		try {
+			List<ForkJoinTask<R>> tasks = new ArrayList<>(inputs.size());
+			for (T input : inputs) {
+				tasks.add(pool.submit(() -> function.apply(input)));
+			}
+			for (ForkJoinTask<R> task : tasks) {
+				r.add(task.join());
+			}
+			return r;
+		} finally {
+			pool.shutdown();
+		}
+	}
+}
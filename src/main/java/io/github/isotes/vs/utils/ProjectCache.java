@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2020 Robert Sauter
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.isotes.vs.utils;
+
+import io.github.isotes.vs.model.ProjectDocument;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of parsed project files keyed by path
+ *
+ * <p>{@link #get(Path)} returns a new {@link ProjectWrapper} with its own copy of the cached {@link ProjectDocument},
+ * so modifications by one caller are never visible to others. A cached entry is considered valid if size and
+ * modification time of the file are unchanged. Otherwise, or if the modification time is too recent to be reliable,
+ * the content is read and compared by its SHA-256 hash before the file is parsed again.</p>
+ *
+ * <p>The cache holds at most a number of entries and a total size of the cached files; the least recently used
+ * entries are evicted first. This class is thread-safe; concurrent requests for the same uncached file may parse it
+ * more than once.</p>
+ */
+public class ProjectCache {
+	// modification times closer than this to the time of checking may be changed again without being detectable
+	static final long MTIME_GRANULARITY_MILLIS = 2000;
+
+	private final int maxEntries;
+	private final long maxBytes;
+	private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long bytes;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	private static class Entry {
+		final long size;
+		final FileTime modified;
+		final long checked;
+		final byte[] hash;
+		final ProjectDocument projectDocument;
+		final String newline;
+		final boolean hasBom;
+
+		Entry(BasicFileAttributes attributes, long checked, byte[] hash, ProjectDocument projectDocument, String newline, boolean hasBom) {
+			this.size = attributes.size();
+			this.modified = attributes.lastModifiedTime();
+			this.checked = checked;
+			this.hash = hash;
+			this.projectDocument = projectDocument;
+			this.newline = newline;
+			this.hasBom = hasBom;
+		}
+
+		boolean isUnchanged(BasicFileAttributes attributes) {
+			return size == attributes.size() && modified.equals(attributes.lastModifiedTime())
+					&& modified.to(TimeUnit.MILLISECONDS) + MTIME_GRANULARITY_MILLIS < checked;
+		}
+
+		ProjectWrapper wrapper(Path path) {
+			return new ProjectWrapper(path, (ProjectDocument) projectDocument.copy(), newline, hasBom);
+		}
+	}
+
+	/**
+	 * @param maxEntries the maximum number of cached projects
+	 * @param maxBytes the maximum total size of the files of the cached projects
+	 */
+	public ProjectCache(int maxEntries, long maxBytes) {
+		this.maxEntries = maxEntries;
+		this.maxBytes = maxBytes;
+	}
+
+	/** Cache of up to 1024 projects with files up to 256 MiB in total */
+	public ProjectCache() {
+		this(1024, 256L << 20);
+	}
+
+	/**
+	 * Get the project from the cache or parse it
+	 *
+	 * @return a wrapper of a private copy of the project
+	 */
+	public ProjectWrapper get(Path path) {
+		Path key = path.toAbsolutePath().normalize();
+		try {
+			BasicFileAttributes attributes = Files.readAttributes(key, BasicFileAttributes.class);
+			Entry entry;
+			synchronized (this) {
+				entry = entries.get(key);
+			}
+			if (entry != null && entry.isUnchanged(attributes)) {
+				hits.incrementAndGet();
+				return entry.wrapper(path);
+			}
+			long checked = System.currentTimeMillis();
+			byte[] content = Files.readAllBytes(key);
+			byte[] hash = sha256(content);
+			if (entry != null && Arrays.equals(entry.hash, hash)) {
+				hits.incrementAndGet();
+				put(key, new Entry(attributes, checked, hash, entry.projectDocument, entry.newline, entry.hasBom));
+				return entry.wrapper(path);
+			}
+			misses.incrementAndGet();
+			ProjectWrapper pw = new ProjectWrapper(new TextFile(path, content, StandardCharsets.UTF_8));
+			put(key, new Entry(attributes, checked, hash, (ProjectDocument) pw.projectDocument.copy(), pw.newline, pw.hasBom));
+			return pw;
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Reading " + path + " failed: " + e.getMessage(), e);
+		}
+	}
+
+	private synchronized void put(Path key, Entry entry) {
+		Entry old = entries.put(key, entry);
+		if (old != null) {
+			bytes -= old.size;
+		}
+		bytes += entry.size;
+		Iterator<Map.Entry<Path, Entry>> it = entries.entrySet().iterator();
+		while ((entries.size() > maxEntries || bytes > maxBytes) && entries.size() > 1) {
+			Entry eldest = it.next().getValue();
+			it.remove();
+			bytes -= eldest.size;
+			evictions.incrementAndGet();
+		}
+	}
+
+	/** Remove the project from the cache */
+	public synchronized void invalidate(Path path) {
+		Entry old = entries.remove(path.toAbsolutePath().normalize());
+		if (old != null) {
+			bytes -= old.size;
+		}
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+		bytes = 0;
+	}
+
+	/** @return the number of cached projects */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/** @return the number of requests served from the cache */
+	public long hits() {
+		return hits.get();
+	}
+
+	/** @return the number of requests that required parsing the project */
+	public long misses() {
+		return misses.get();
+	}
+
+	/** @return the number of projects evicted because a limit has been reached */
+	public long evictions() {
+		return evictions.get();
+	}
+
+	static byte[] sha256(byte[] content) {
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(content);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 not supported", e);
+		}
+	}
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright (c) 2020 Robert Sauter
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.isotes.vs.utils;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Read-only streaming reader that extracts a {@link ProjectSnapshot} without building the XMLBeans document
+ *
+ * <p>The project file is read once with a {@link XMLStreamReader} and only the values of the snapshot are kept: the
+ * configurations, the configuration specific property groups, the ClCompile, Link, and Lib settings of the
+ * configuration specific item definition groups, the 'Globals' and 'UserMacros' property groups, and the Include
+ * attributes of the items. The groups are selected like in {@link ProjectWrapper#getConfiguration(String)} and the
+ * values are the same as those of {@link ProjectWrapper#freeze()}, except that all child elements of item groups are
+ * considered items. The snapshot does not contain the XML document: {@link ProjectSnapshot#thaw()} parses the
+ * project file.</p>
+ *
+ * <p>The filter skips unneeded subtrees. It is called with the names of the child elements of the project, e.g.,
+ * 'PropertyGroup' or 'ItemGroup', and with the paths of the items in item groups and item definition groups, e.g.,
+ * 'ItemGroup/ClCompile' or 'ItemDefinitionGroup/Link'. Rejected elements are skipped including their children. The
+ * configurations are read from the 'ItemGroup/ProjectConfiguration' items. A reader can be used by multiple
+ * threads.</p>
+ */
+public class ProjectReader {
+	/** Reads everything */
+	public static final Predicate<String> ALL = path -> true;
+	/** Skips all items except the project configurations, e.g., the source files */
+	public static final Predicate<String> SETTINGS = path -> !path.startsWith("ItemGroup/") || path.equals("ItemGroup/ProjectConfiguration");
+
+	private static final XMLInputFactory XML_INPUT_FACTORY = createFactory();
+
+	private final Predicate<String> filter;
+
+	/** @param filter accepts the names and paths of the elements to read, see above */
+	public ProjectReader(Predicate<String> filter) {
+		this.filter = filter;
+	}
+
+	public ProjectReader() {
+		this(ALL);
+	}
+
+	private static XMLInputFactory createFactory() {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		return factory;
+	}
+
+	public ProjectSnapshot read(Path path) {
+		return read(new MappedTextFile(path));
+	}
+
+	public ProjectSnapshot read(MappedTextFile textFile) {
+		try {
+			XMLStreamReader reader = createReader(textFile);
+			try {
+				return new Parse(reader).project(textFile);
+			} finally {
+				reader.close();
+			}
+		} catch (XMLStreamException e) {
+			throw new IllegalArgumentException("Parsing " + textFile.path + " failed: " + e.getMessage(), e);
+		}
+	}
+
+	/** The state of reading a single project */
+	private class Parse {
+		private final XMLStreamReader reader;
+		// filter results by container and element name
+		private final Map<String, Map<String, Boolean>> accepted = new HashMap<>();
+		private final List<String[]> configurations = new ArrayList<>();
+		private boolean configurationsRead;
+		private final Map<String, Map<String, String>> properties = new HashMap<>();
+		// ClCompile, Link, and Lib settings by configuration
+		private final Map<String, Map<String, Map<String, String>>> definitions = new HashMap<>();
+		// groups with other conditions, which are used for configurations without groups with the exact condition
+		private final List<Map.Entry<String, Map<String, String>>> otherProperties = new ArrayList<>();
+		private final List<Map.Entry<String, Map<String, Map<String, String>>>> otherDefinitions = new ArrayList<>();
+		private Map<String, String> globals;
+		private Map<String, String> userMacros;
+		private final Map<String, List<String>> items = new LinkedHashMap<>();
+
+		Parse(XMLStreamReader reader) {
+			this.reader = reader;
+		}
+
+		ProjectSnapshot project(MappedTextFile textFile) throws XMLStreamException {
+			if (reader.nextTag() != XMLStreamConstants.START_ELEMENT || !"Project".equals(reader.getLocalName())) {
+				throw new IllegalArgumentException("Parsing " + textFile.path + " failed: expected Project element");
+			}
+			while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+				String name = reader.getLocalName();
+				if (!accept("", name)) {
+					skip();
+				} else if (name.equals("PropertyGroup")) {
+					propertyGroup();
+				} else if (name.equals("ItemDefinitionGroup")) {
+					itemDefinitionGroup();
+				} else if (name.equals("ItemGroup")) {
+					itemGroup();
+				} else {
+					skip();
+				}
+			}
+
+			Path directory = textFile.path.toAbsolutePath().getParent();
+			List<ProjectSnapshot.Configuration> r = new ArrayList<>(configurations.size());
+			for (String[] cfg : configurations) {
+				Map<String, String> values = properties.containsKey(cfg[0]) ? properties.get(cfg[0])
+						: applicable(otherProperties, cfg[0], directory, new LinkedHashMap<>());
+				Map<String, Map<String, String>> definition = definitions.containsKey(cfg[0]) ? definitions.get(cfg[0])
+						: applicable(otherDefinitions, cfg[0], directory, Collections.emptyMap());
+				r.add(new ProjectSnapshot.Configuration(cfg[0], cfg[1], cfg[2], values,
+						definition.getOrDefault("ClCompile", new LinkedHashMap<>()),
+						definition.getOrDefault("Link", new LinkedHashMap<>()),
+						definition.getOrDefault("Lib", new LinkedHashMap<>())));
+			}
+			for (Map.Entry<String, List<String>> e : items.entrySet()) {
+				e.setValue(Collections.unmodifiableList(e.getValue()));
+			}
+			return new ProjectSnapshot(textFile.path, textFile.newline, textFile.hasBom, Collections.unmodifiableList(r),
+					Collections.unmodifiableMap(globals != null ? globals : new LinkedHashMap<>()),
+					Collections.unmodifiableMap(userMacros != null ? userMacros : new LinkedHashMap<>()),
+					Collections.unmodifiableMap(items), null);
+		}
+
+		/** @return the value of the first group whose condition selects the configuration like in ConfigurationIndex */
+		private <T> T applicable(List<Map.Entry<String, T>> groups, String config, Path directory, T defaultValue) {
+			for (Map.Entry<String, T> group : groups) {
+				if (ConfigurationIndex.selects(group.getKey(), config, directory)) {
+					return group.getValue();
+				}
+			}
+			return defaultValue;
+		}
+
+		private boolean accept(String container, String name) {
+			return accepted.computeIfAbsent(container, k -> new HashMap<>())
+					.computeIfAbsent(name, k -> filter.test(container.isEmpty() ? name : container + "/" + name));
+		}
+
+		private void propertyGroup() throws XMLStreamException {
+			String condition = reader.getAttributeValue(null, "Condition");
+			String config = ConfigurationIndex.configuration(condition);
+			String label = reader.getAttributeValue(null, "Label");
+			Map<String, String> values = elements();
+			if (config != null) {
+				properties.putIfAbsent(config, values);
+			} else if (condition != null) {
+				otherProperties.add(new AbstractMap.SimpleEntry<>(condition, values));
+			}
+			if (globals == null && "Globals".equals(label)) {
+				globals = values;
+			}
+			if (userMacros == null && "UserMacros".equals(label)) {
+				userMacros = values;
+			}
+		}
+
+		private void itemDefinitionGroup() throws XMLStreamException {
+			String condition = reader.getAttributeValue(null, "Condition");
+			String config = ConfigurationIndex.configuration(condition);
+			if (condition == null || (config != null && definitions.containsKey(config))) {
+				// only the first group of a configuration is used
+				skip();
+				return;
+			}
+			Map<String, Map<String, String>> definition = new HashMap<>();
+			if (config != null) {
+				definitions.put(config, definition);
+			} else {
+				otherDefinitions.add(new AbstractMap.SimpleEntry<>(condition, definition));
+			}
+			while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+				String name = reader.getLocalName();
+				if ((name.equals("ClCompile") || name.equals("Link") || name.equals("Lib")) && accept("ItemDefinitionGroup", name)) {
+					// the last element determines the settings
+					definition.put(name, elements());
+				} else {
+					skip();
+				}
+			}
+		}
+
+		private void itemGroup() throws XMLStreamException {
+			boolean projectConfigurations = !configurationsRead && "ProjectConfigurations".equals(reader.getAttributeValue(null, "Label"));
+			configurationsRead |= projectConfigurations;
+			while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+				String name = reader.getLocalName();
+				if (!accept("ItemGroup", name)) {
+					skip();
+					continue;
+				}
+				String include = reader.getAttributeValue(null, "Include");
+				items.computeIfAbsent(name, k -> new ArrayList<>()).add(include);
+				if (projectConfigurations && name.equals("ProjectConfiguration")) {
+					Map<String, String> values = elements();
+					String configuration = values.get("Configuration");
+					String platform = values.get("Platform");
+					if (configuration == null || platform == null) {
+						throw new IllegalArgumentException("Expected Configuration and Platform in ProjectConfiguration '" + include + "'");
+					}
+					configurations.add(new String[]{include, configuration, platform});
+				} else {
+					skip();
+				}
+			}
+		}
+
+		private Map<String, String> elements() throws XMLStreamException {
+			return ProjectReader.elements(reader);
+		}
+
+		private void skip() throws XMLStreamException {
+			ProjectReader.skip(reader, 1);
+		}
+	}
+
+	/** @return a reader of the content of the file, which must be closed */
+	static XMLStreamReader createReader(MappedTextFile textFile) throws XMLStreamException {
+		synchronized (XML_INPUT_FACTORY) {
+			return XML_INPUT_FACTORY.createXMLStreamReader(textFile.reader());
+		}
+	}
+
+	/**
+	 * Read the child elements of the current element like {@link ProjectSnapshot#elements(org.apache.xmlbeans.XmlObject)}
+	 *
+	 * @return the text of the child elements by name; empty elements have an empty text
+	 */
+	static Map<String, String> elements(XMLStreamReader reader) throws XMLStreamException {
+		Map<String, String> r = new LinkedHashMap<>();
+		while (nextChild(reader)) {
+			String name = reader.getLocalName();
+			int event = reader.next();
+			if (event == XMLStreamConstants.END_ELEMENT) {
+				r.put(name, "");
+			} else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.SPACE
+					|| event == XMLStreamConstants.CDATA) {
+				r.put(name, reader.getText());
+				skip(reader, 1);
+			} else {
+				// e.g., a comment or child elements as first content
+				skip(reader, event == XMLStreamConstants.START_ELEMENT ? 2 : 1);
+			}
+		}
+		return r;
+	}
+
+	/** Advance to the next child element of the current element; @return false at the end of the element */
+	private static boolean nextChild(XMLStreamReader reader) throws XMLStreamException {
+		while (true) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				return true;
+			}
+			if (event == XMLStreamConstants.END_ELEMENT) {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Skip events up to and including the end element at the depth relative to the current element, i.e., use 1 to
+	 * skip the current start element including its children
+	 */
+	static void skip(XMLStreamReader reader, int depth) throws XMLStreamException {
+		while (depth > 0) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			}
+		}
+	}
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2020 Robert Sauter
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.isotes.vs.utils;
+
+import io.github.isotes.vs.model.ItemGroupType;
+import io.github.isotes.vs.model.ProjectDocument;
+import io.github.isotes.vs.model.PropertyGroupType;
+import io.github.isotes.vs.model.SimpleItemType;
+import org.apache.xmlbeans.XmlObject;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Immutable view of the settings of a {@link ProjectWrapper} that can be shared between threads without locking
+ *
+ * <p>Created with {@link ProjectWrapper#freeze()}. The settings are extracted into maps from element name to text:
+ * the properties and the ClCompile, Link, and Lib settings of each configuration, the 'Globals' and 'UserMacros'
+ * property groups, and the Include attributes of the items by item type. If an element occurs multiple times, the
+ * last one determines the value like in MSBuild. Conditions on individual elements are not evaluated.</p>
+ *
+ * <p>When a previous snapshot is passed to {@link ProjectWrapper#freeze(ProjectSnapshot)}, configurations, maps, and
+ * item lists with unchanged values are taken over by identity from it. If the document has not changed at all, the
+ * previous snapshot is returned without copying the document. Use {@link #thaw()} to get a mutable project for
+ * modifications.</p>
+ */
+public class ProjectSnapshot {
+	/** The settings of a configuration, e.g., Release|x64 */
+	public static class Configuration {
+		public final String name;
+		public final String configuration;
+		public final String platform;
+		/** The properties of the configuration specific property group */
+		public final Map<String, String> properties;
+		public final Map<String, String> clCompile;
+		public final Map<String, String> link;
+		public final Map<String, String> lib;
+
+		Configuration(String name, String configuration, String platform, Map<String, String> properties,
+				Map<String, String> clCompile, Map<String, String> link, Map<String, String> lib) {
+			this.name = name;
+			this.configuration = configuration;
+			this.platform = platform;
+			this.properties = Collections.unmodifiableMap(properties);
+			this.clCompile = Collections.unmodifiableMap(clCompile);
+			this.link = Collections.unmodifiableMap(link);
+			this.lib = Collections.unmodifiableMap(lib);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Configuration)) {
+				return false;
+			}
+			Configuration that = (Configuration) o;
+			return name.equals(that.name) && configuration.equals(that.configuration) && platform.equals(that.platform)
+					&& properties.equals(that.properties) && clCompile.equals(that.clCompile) && link.equals(that.link)
+					&& lib.equals(that.lib);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(name, properties, clCompile, link, lib);
+		}
+	}
+
+	public final Path path;
+	public final String newline;
+	public final boolean hasBom;
+	/** The configurations in the order of the 'ProjectConfigurations' item group */
+	public final List<Configuration> configurations;
+	public final Map<String, String> globals;
+	public final Map<String, String> userMacros;
+	/** The Include attributes of the items by item type, e.g., ClCompile, in document order */
+	public final Map<String, List<String>> items;
+	// an unmodified copy for thaw() or null if not available
+	private final ProjectDocument document;
+	// the file content the snapshot has been created from or null if unknown, see SnapshotStore
+	final SnapshotStore.Stamp source;
+
+	/** The collections are taken over as they are and, therefore, must already be unmodifiable */
+	ProjectSnapshot(Path path, String newline, boolean hasBom, List<Configuration> configurations,
+			Map<String, String> globals, Map<String, String> userMacros, Map<String, List<String>> items,
+			ProjectDocument document, SnapshotStore.Stamp source) {
+		this.path = path;
+		this.newline = newline;
+		this.hasBom = hasBom;
+		this.configurations = configurations;
+		this.globals = globals;
+		this.userMacros = userMacros;
+		this.items = items;
+		this.document = document;
+		this.source = source;
+	}
+
+	ProjectSnapshot(Path path, String newline, boolean hasBom, List<Configuration> configurations,
+			Map<String, String> globals, Map<String, String> userMacros, Map<String, List<String>> items,
+			ProjectDocument document) {
+		this(path, newline, hasBom, configurations, globals, userMacros, items, document, null);
+	}
+
+	/** @return this snapshot marked as created from the file content with the stamp */
+	ProjectSnapshot withSource(SnapshotStore.Stamp source) {
+		return new ProjectSnapshot(path, newline, hasBom, configurations, globals, userMacros, items, document, source);
+	}
+
+	/**
+	 * @param pw the project to copy
+	 * @param previous a previous snapshot whose unchanged parts are reused or null
+	 */
+	static ProjectSnapshot of(ProjectWrapper pw, ProjectSnapshot previous) {
+		if (previous != null && previous.document != null && Objects.equals(pw.path, previous.path)
+				&& pw.newline.equals(previous.newline) && pw.hasBom == previous.hasBom
+				&& sameContent(pw.projectDocument.getDomNode(), previous.document.getDomNode())) {
+			return previous;
+		}
+		List<Configuration> configurations = new ArrayList<>();
+		for (ProjectConfiguration pc : pw.configurations()) {
+			ConfigurationWrapper cfg = pc.resolve();
+			Configuration configuration = new Configuration(pc.name, pc.configuration, pc.platform,
+					elements(cfg.propertyGroup != null ? cfg.propertyGroup.propertyGroup : null),
+					elements(cfg.clCompile), elements(cfg.link), elements(cfg.lib));
+			Configuration shared = previous != null ? previous.configuration(pc.name) : null;
+			configurations.add(configuration.equals(shared) ? shared : configuration);
+		}
+		Map<String, String> globals = elements(labeledPropertyGroup(pw, "Globals"));
+		Map<String, String> userMacros = elements(labeledPropertyGroup(pw, "UserMacros"));
+		Map<String, List<String>> items = new LinkedHashMap<>();
+		for (ItemGroupType itemGroup : pw.project.getItemGroupList()) {
+			for (SimpleItemType item : itemGroup.getItemList()) {
+				items.computeIfAbsent(X.elementName(item), k -> new ArrayList<>()).add(item.getInclude());
+			}
+		}
+		for (Map.Entry<String, List<String>> e : items.entrySet()) {
+			List<String> shared = previous != null ? previous.items.get(e.getKey()) : null;
+			e.setValue(e.getValue().equals(shared) ? shared : Collections.unmodifiableList(e.getValue()));
+		}
+		return new ProjectSnapshot(pw.path, pw.newline, pw.hasBom, Collections.unmodifiableList(configurations),
+				previous != null && previous.globals.equals(globals) ? previous.globals : Collections.unmodifiableMap(globals),
+				previous != null && previous.userMacros.equals(userMacros) ? previous.userMacros : Collections.unmodifiableMap(userMacros),
+				Collections.unmodifiableMap(items), (ProjectDocument) pw.projectDocument.copy());
+	}
+
+	/** @return whether the nodes and their descendants are equal, which is much cheaper than copying a document */
+	private static boolean sameContent(Node a, Node b) {
+		if (a.getNodeType() != b.getNodeType() || !Objects.equals(a.getNamespaceURI(), b.getNamespaceURI())
+				|| !Objects.equals(a.getNodeName(), b.getNodeName()) || !Objects.equals(a.getNodeValue(), b.getNodeValue())) {
+			return false;
+		}
+		NamedNodeMap aAttributes = a.getAttributes();
+		NamedNodeMap bAttributes = b.getAttributes();
+		if (aAttributes != null) {
+			if (bAttributes == null || aAttributes.getLength() != bAttributes.getLength()) {
+				return false;
+			}
+			for (int i = 0; i < aAttributes.getLength(); i++) {
+				Node attribute = aAttributes.item(i);
+				Node other = attribute.getLocalName() != null
+						? bAttributes.getNamedItemNS(attribute.getNamespaceURI(), attribute.getLocalName())
+						: bAttributes.getNamedItem(attribute.getNodeName());
+				if (other == null || !Objects.equals(attribute.getNodeValue(), other.getNodeValue())) {
+					return false;
+				}
+			}
+		} else if (bAttributes != null) {
+			return false;
+		}
+		Node aChild = a.getFirstChild();
+		Node bChild = b.getFirstChild();
+		for (; aChild != null && bChild != null; aChild = aChild.getNextSibling(), bChild = bChild.getNextSibling()) {
+			if (!sameContent(aChild, bChild)) {
+				return false;
+			}
+		}
+		return aChild == null && bChild == null;
+	}
+
+	private static PropertyGroupType labeledPropertyGroup(ProjectWrapper pw, String label) {
+		for (PropertyGroupType pg : pw.project.getPropertyGroupList()) {
+			if (label.equals(pg.getLabel())) {
+				return pg;
+			}
+		}
+		return null;
+	}
+
+	/** @return the text of the child elements by name; empty elements have an empty text */
+	static Map<String, String> elements(XmlObject parent) {
+		return elements(parent != null ? parent.getDomNode() : null);
+	}
+
+	/** @return the text of the child elements by name; empty elements have an empty text */
+	static Map<String, String> elements(Node parent) {
+		Map<String, String> r = new LinkedHashMap<>();
+		if (parent == null) {
+			return r;
+		}
+		for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+			if (child.getNodeType() != Node.ELEMENT_NODE) {
+				continue;
+			}
+			if (child.getFirstChild() == null) {
+				r.put(child.getLocalName(), "");
+			} else if (X.isStringElement(child)) {
+				r.put(child.getLocalName(), X.string(child));
+			}
+		}
+		return r;
+	}
+
+	/** @return the configuration with the name, e.g., Release|x64, or null if there is none */
+	public Configuration configuration(String name) {
+		for (Configuration configuration : configurations) {
+			if (configuration.name.equals(name)) {
+				return configuration;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Create a mutable project with the content of this snapshot
+	 *
+	 * <p>This copies the XML document retained by the snapshot, which is the only copy made for an unchanged project
+	 * as {@link ProjectWrapper#freeze(ProjectSnapshot)} reuses the previous snapshot. Snapshots without document parse
+	 * the project file again instead.</p>
+	 *
+	 * @return a new project
+	 */
+	public ProjectWrapper thaw() {
+		if (document == null) {
+			return new ProjectWrapper(path);
+		}
+		return new ProjectWrapper(path, (ProjectDocument) document.copy(), newline, hasBom);
+	}
+}
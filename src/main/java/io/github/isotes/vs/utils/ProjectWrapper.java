@@ -8,20 +8,26 @@ package io.github.isotes.vs.utils;
 import io.github.isotes.vs.model.ItemGroupType;
 import io.github.isotes.vs.model.ProjectConfigurationDocument;
 import io.github.isotes.vs.model.ProjectDocument;
+import io.github.isotes.vs.model.ProjectReferenceDocument;
 import io.github.isotes.vs.model.PropertyGroupType;
+import io.github.isotes.vs.model.SimpleItemType;
 import org.apache.xmlbeans.XmlException;
 import org.apache.xmlbeans.XmlOptions;
 
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
@@ -33,7 +39,8 @@ import java.util.stream.Collectors;
  *     commonly present in C/C++ project files.</li>
  *     <li>Use {@link #save(Path)} and {@link #stringify()} to save a project file preserving original newline and BOM
  *     and trying to work with formatting inconsistencies of the upstream project to minimize unintended differences.
- *     </li>
+ *     Use {@link #saveIfChanged(Path)} to keep files that would not change untouched, e.g., to avoid unnecessary
+ *     rebuilds.</li>
  * </ul>
  */
 public class ProjectWrapper {
@@ -43,33 +50,56 @@ public class ProjectWrapper {
 	public final String newline;
 	public final boolean hasBom;
 
+	private volatile ConfigurationIndex configurationIndex;
 
-	private static final Pattern FIX_SELF_CLOSING_TAGS = Pattern.compile("^(\\s*)(<.*\\S)/>$", Pattern.MULTILINE);
-	private static final Pattern FIX_IMPORT_GROUP = Pattern.compile("^(\\s*)(<ImportGroup Label=\".*\">)(</ImportGroup>)$", Pattern.MULTILINE);
-	private static final Pattern FIX_MULTILINE_EMPTY_TAG = Pattern.compile(
-			"^(\\s*)<(SccProjectName|SccAuxPath|SccLocalPath|SccProvider|ImageHasSafeExceptionHandlers|IgnoreAllDefaultLibraries|LinkLibraryDependencies|Command|Message)></\\w+>$",
-			Pattern.MULTILINE);
+	private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"utf-8\"?>";
 
 
 	public ProjectWrapper(ProjectDocument projectDocument) {
-		this.path = null;
-		this.projectDocument = projectDocument;
-		this.project = projectDocument.getProject();
 		// Windows defaults
-		this.hasBom = true;
-		this.newline = "\r\n";
+		this(null, projectDocument, "\r\n", true);
 	}
 
 	public ProjectWrapper(Path path) {
-		TextFile textFile = new TextFile(path);
+		this(new TextFile(path));
+	}
+
+	public ProjectWrapper(TextFile textFile) {
+		this(textFile.path, parse(textFile), textFile.newline, textFile.hasBom);
+	}
+
+	/** Parse a project read via NIO, see {@link MappedTextFile} */
+	public ProjectWrapper(MappedTextFile textFile) {
+		this(textFile.path, parse(textFile), textFile.newline, textFile.hasBom);
+	}
+
+	/**
+	 * @param path the path of the project file, used, e.g., to resolve relative paths
+	 * @param projectDocument the already parsed project
+	 * @param newline the newline used by {@link #stringify()}
+	 * @param hasBom whether {@link #stringify()} adds a BOM
+	 */
+	public ProjectWrapper(Path path, ProjectDocument projectDocument, String newline, boolean hasBom) {
 		this.path = path;
-		this.newline = textFile.newline;
-		this.hasBom = textFile.hasBom;
+		this.projectDocument = projectDocument;
+		this.project = projectDocument.getProject();
+		this.newline = newline;
+		this.hasBom = hasBom;
+	}
+
+	private static ProjectDocument parse(TextFile textFile) {
 		try {
-			this.projectDocument = ProjectDocument.Factory.parse(textFile.content);
-			this.project = projectDocument.getProject();
+			return ProjectDocument.Factory.parse(textFile.content);
 		} catch (XmlException e) {
-			throw new IllegalArgumentException("Parsing " + path + " failed: " + e.getMessage(), e);
+			throw new IllegalArgumentException("Parsing " + textFile.path + " failed: " + e.getMessage(), e);
+		}
+	}
+
+	private static ProjectDocument parse(MappedTextFile textFile) {
+		try {
+			return ProjectDocument.Factory.parse(textFile.reader());
+		} catch (XmlException | IOException e) {
+			throw new IllegalArgumentException("Parsing " + textFile.path + " failed: " + e.getMessage(), e);
 		}
 	}
 
@@ -84,10 +114,51 @@ public class ProjectWrapper {
 				.collect(Collectors.toList());
 	}
 
+	/** @return the ProjectReference items of all item groups */
+	public List<ProjectReferenceDocument.ProjectReference> projectReferences() {
+		List<ProjectReferenceDocument.ProjectReference> r = new ArrayList<>();
+		for (ItemGroupType itemGroup : project.getItemGroupList()) {
+			for (SimpleItemType item : itemGroup.getItemList()) {
+				if (item instanceof ProjectReferenceDocument.ProjectReference) {
+					r.add((ProjectReferenceDocument.ProjectReference) item);
+				}
+			}
+		}
+		return r;
+	}
+
+	/**
+	 * Get the wrapper for a configuration
+	 *
+	 * <p>The configuration specific groups are looked up in an index of the project that is built on first use. The
+	 * index is rebuilt automatically if top-level groups have been added, removed, or replaced, if the condition of a
+	 * group has changed, or if a configuration is not found and the ProjectConfigurations item group has changed.</p>
+	 */
 	public ConfigurationWrapper getConfiguration(String config) {
 		return new ConfigurationWrapper(this, config);
 	}
 
+	/** Discard the index of configuration specific groups used by {@link #getConfiguration(String)} */
+	public void invalidateConfigurationIndex() {
+		configurationIndex = null;
+	}
+
+	ConfigurationIndex.Entry configurationIndexEntry(String config) {
+		ConfigurationIndex index = configurationIndex;
+		if (index == null || !index.isValid()) {
+			index = new ConfigurationIndex(this);
+			configurationIndex = index;
+		}
+		ConfigurationIndex.Entry entry = index.get(config);
+		if (entry == null && !index.isCurrent(project)) {
+			// a configuration has been added to the ProjectConfigurations item group
+			index = new ConfigurationIndex(this);
+			configurationIndex = index;
+			entry = index.get(config);
+		}
+		return entry;
+	}
+
 	public PropertyGroupType getPropertyGroup(String label) {
 		for (PropertyGroupType pg : project.getPropertyGroupList()) {
 			if (Objects.equals(label, pg.getLabel())) {
@@ -105,29 +176,60 @@ public class ProjectWrapper {
 		return new GenericPropertyGroup(getPropertyGroup("UserMacros"));
 	}
 
-	public String stringify(String newline, boolean withBom) {
-		StringWriter sw = new StringWriter();
+	/** @return an immutable copy of the settings that can be shared between threads, see {@link ProjectSnapshot} */
+	public ProjectSnapshot freeze() {
+		return ProjectSnapshot.of(this, null);
+	}
+
+	/**
+	 * @param previous a previous snapshot of the project whose unchanged parts are reused
+	 * @return an immutable copy of the settings that can be shared between threads, see {@link ProjectSnapshot}
+	 */
+	public ProjectSnapshot freeze(ProjectSnapshot previous) {
+		return ProjectSnapshot.of(this, previous);
+	}
+
+	/**
+	 * Write the project as XML in a single pass applying the Visual Studio formatting
+	 *
+	 * @param writer the target, which is neither flushed nor closed
+	 * @param newline the newline to use
+	 * @param withBom whether to start with a BOM
+	 */
+	public void write(Writer writer, String newline, boolean withBom) throws IOException {
+		if (withBom) {
+			writer.write(TextFile.BOM);
+		}
+		// add xml version and encoding
+		writer.write(XML_DECLARATION);
+		writer.write(newline);
 		XmlOptions xmlOptions = new XmlOptions();
 		xmlOptions.setSavePrettyPrint();
+		// add space before slash to self-closing tags, add line breaks to empty import groups and several other tags,
+		// and use the requested newline
+		VsFormattingWriter formattingWriter = new VsFormattingWriter(writer, newline);
+		projectDocument.save(formattingWriter, xmlOptions);
+		formattingWriter.close();
+	}
+
+	/**
+	 * Write the project as UTF-8 encoded XML in a single pass applying the Visual Studio formatting
+	 *
+	 * @param out the target, which is flushed but not closed
+	 * @param newline the newline to use
+	 * @param withBom whether to start with a BOM
+	 */
+	public void write(OutputStream out, String newline, boolean withBom) throws IOException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+		write(writer, newline, withBom);
+		writer.flush();
+	}
+
+	public String stringify(String newline, boolean withBom) {
+		StringWriter sw = new StringWriter();
 		try {
-			projectDocument.save(sw, xmlOptions);
-			String content = sw.toString();
-
-			// add space before slash to self-closing tags
-			content = FIX_SELF_CLOSING_TAGS.matcher(content).replaceAll("$1$2 />");
-			// the import groups contain a line break
-			content = FIX_IMPORT_GROUP.matcher(content).replaceAll("$1$2\n$1$3");
-			// as do several other tags
-			content = FIX_MULTILINE_EMPTY_TAG.matcher(content).replaceAll("$1<$2>\n$1</$2>");
-			// newline as requested
-			content = content.replace("\r\n", "\n").replace("\n", newline);
-			// add xml version and encoding
-			content = "<?xml version=\"1.0\" encoding=\"utf-8\"?>" + newline + content;
-
-			if (withBom) {
-				content = TextFile.BOM + content;
-			}
-			return content;
+			write(sw, newline, withBom);
+			return sw.toString();
 		} catch (IOException e) {
 			throw new IllegalStateException("Failed to convert project to string: " + e.getMessage(), e);
 		}
@@ -137,9 +239,25 @@ public class ProjectWrapper {
 		return stringify(this.newline, this.hasBom);
 	}
 
+	/** Save the project, streaming it to a temporary file that replaces the file atomically */
 	public void save(Path path) {
 		try {
-			Files.write(path, stringify().getBytes(StandardCharsets.UTF_8));
+			FileUpdate.writeAtomically(path, out -> write(out, newline, hasBom));
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Saving project to " + path + " failed: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Save the project only if the content of the file would change, replacing the file atomically
+	 *
+	 * @return true if the file has been written
+	 */
+	public boolean saveIfChanged(Path path) {
+		try {
+			ByteArrayOutputStream content = new ByteArrayOutputStream();
+			write(content, newline, hasBom);
+			return FileUpdate.writeIfChanged(path, content.toByteArray());
 		} catch (IOException e) {
 			throw new IllegalArgumentException("Saving project to " + path + " failed: " + e.getMessage(), e);
 		}
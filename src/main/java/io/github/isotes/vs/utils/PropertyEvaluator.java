@@ -0,0 +1,369 @@
+/*
+ * Copyright (c) 2020 Robert Sauter
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.isotes.vs.utils;
+
+import io.github.isotes.vs.model.PropertyGroupType;
+import org.w3c.dom.Node;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Expands the $(Name) property references of a project configuration
+ *
+ * <p>The properties are defined by the property groups that apply to the configuration, see
+ * {@link ConfigurationWrapper#propertyGroups}, e.g., 'Globals', 'UserMacros', and those with the condition of the
+ * configuration. Conditions on individual properties are not evaluated. A later definition overrides an earlier one; a
+ * reference of a property to itself refers to the previous definition, e.g., for appending to a list. In contrast to
+ * MSBuild, which evaluates the definitions in document order, a reference to another property always yields its last
+ * definition, because the definitions of imported files are not available. Property names are case-insensitive.
+ * Undefined properties expand to an empty string and unsupported syntax, e.g., property functions, is kept.</p>
+ *
+ * <p>Well-known reserved properties, e.g., ProjectDir, Configuration, and Platform, are defined unless the project
+ * defines them. Global properties, e.g., those of {@link #solutionProperties(Path)}, override all definitions.</p>
+ *
+ * <p>Each value is tokenized once and the expanded values are memoized together with the properties they depend on.
+ * {@link #put(String, String)} changes a property in the project and only discards the values that depend on it.
+ * After changing the property groups otherwise, call {@link #invalidate(String)} or {@link #invalidate()}.</p>
+ */
+public class PropertyEvaluator {
+	/** A value split into literal text and property references */
+	static final class Template {
+		// literals.length == references.length + 1; references are lower case, names as written
+		final String[] literals;
+		final String[] references;
+		final String[] names;
+
+		private Template(String[] literals, String[] names) {
+			this.literals = literals;
+			this.names = names;
+			this.references = new String[names.length];
+			for (int i = 0; i < names.length; i++) {
+				references[i] = names[i].toLowerCase(Locale.ROOT);
+			}
+		}
+
+		static Template parse(String value) {
+			List<String> literals = new ArrayList<>();
+			List<String> references = new ArrayList<>();
+			int start = 0;
+			int literalStart = 0;
+			while ((start = value.indexOf("$(", start)) >= 0) {
+				int end = start + 2;
+				while (end < value.length() && isNameChar(value.charAt(end), end == start + 2)) {
+					end++;
+				}
+				if (end == start + 2 || end >= value.length() || value.charAt(end) != ')') {
+					// not a simple property reference, e.g., a property function
+					start += 2;
+					continue;
+				}
+				literals.add(value.substring(literalStart, start));
+				references.add(value.substring(start + 2, end));
+				start = literalStart = end + 1;
+			}
+			literals.add(value.substring(literalStart));
+			return new Template(literals.toArray(new String[0]), references.toArray(new String[0]));
+		}
+
+		/** @param properties the values by name as written in the template; null for undefined properties */
+		String expand(Function<String, String> properties) {
+			if (names.length == 0) {
+				return literals[0];
+			}
+			StringBuilder sb = new StringBuilder(literals[0]);
+			for (int i = 0; i < names.length; i++) {
+				String value = properties.apply(names[i]);
+				sb.append(value != null ? value : "").append(literals[i + 1]);
+			}
+			return sb.toString();
+		}
+
+		private static boolean isNameChar(char c, boolean first) {
+			return c == '_' || (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z')
+					|| (!first && (c == '-' || (c >= '0' && c <= '9')));
+		}
+	}
+
+	/** A property element of the project */
+	private static final class Definition {
+		final Node node;
+		final Template template;
+		final Definition previous;
+
+		Definition(Node node, Template template, Definition previous) {
+			this.node = node;
+			this.template = template;
+			this.previous = previous;
+		}
+	}
+
+	public final ProjectWrapper project;
+	/** The configuration, e.g., Release|x64 */
+	public final String configuration;
+	private final Map<String, String> globalProperties = new HashMap<>();
+	private final Map<String, String> reservedProperties = new HashMap<>();
+	// last definition by lower case name
+	private Map<String, Definition> definitions;
+	private final Map<String, String> values = new HashMap<>();
+	// the names of the memoized values that depend on a property by lower case name
+	private final Map<String, Set<String>> dependents = new HashMap<>();
+	private final Map<String, Template> templates = new HashMap<>();
+	// the properties being evaluated to detect recursive definitions
+	private final Set<String> evaluating = new LinkedHashSet<>();
+
+	/**
+	 * @param project the project
+	 * @param configuration the configuration, e.g., Release|x64
+	 * @param globalProperties properties that override the definitions of the project, e.g., SolutionDir
+	 */
+	public PropertyEvaluator(ProjectWrapper project, String configuration, Map<String, String> globalProperties) {
+		this.project = project;
+		this.configuration = configuration;
+		for (Map.Entry<String, String> e : globalProperties.entrySet()) {
+			this.globalProperties.put(e.getKey().toLowerCase(Locale.ROOT), e.getValue());
+		}
+		String[] cp = configuration.split("\\|", 2);
+		reserved("Configuration", cp[0]);
+		reserved("Platform", cp.length > 1 ? cp[1] : "");
+		if (project.path != null) {
+			Path path = project.path.toAbsolutePath().normalize();
+			String fileName = path.getFileName().toString();
+			int dot = fileName.lastIndexOf('.');
+			String name = dot > 0 ? fileName.substring(0, dot) : fileName;
+			String ext = dot > 0 ? fileName.substring(dot) : "";
+			reserved("ProjectDir", path.getParent().toString() + File.separator);
+			reserved("ProjectPath", path.toString());
+			reserved("ProjectName", name);
+			reserved("ProjectFileName", fileName);
+			reserved("ProjectExt", ext);
+			reserved("MSBuildProjectDirectory", path.getParent().toString());
+			reserved("MSBuildProjectFullPath", path.toString());
+			reserved("MSBuildProjectName", name);
+			reserved("MSBuildProjectFile", fileName);
+			reserved("MSBuildProjectExtension", ext);
+			reserved("MSBuildThisFileDirectory", path.getParent().toString() + File.separator);
+		}
+	}
+
+	public PropertyEvaluator(ProjectWrapper project, String configuration) {
+		this(project, configuration, Collections.emptyMap());
+	}
+
+	/** @return the well-known properties of a solution, e.g., SolutionDir, to be used as global properties */
+	public static Map<String, String> solutionProperties(Path solution) {
+		Path path = solution.toAbsolutePath().normalize();
+		String fileName = path.getFileName().toString();
+		int dot = fileName.lastIndexOf('.');
+		Map<String, String> r = new LinkedHashMap<>();
+		r.put("SolutionDir", path.getParent().toString() + File.separator);
+		r.put("SolutionPath", path.toString());
+		r.put("SolutionName", dot > 0 ? fileName.substring(0, dot) : fileName);
+		r.put("SolutionFileName", fileName);
+		r.put("SolutionExt", dot > 0 ? fileName.substring(dot) : "");
+		return r;
+	}
+
+	private void reserved(String name, String value) {
+		reservedProperties.put(name.toLowerCase(Locale.ROOT), value);
+	}
+
+	/**
+	 * @param name the case-insensitive name of the property
+	 * @return the expanded value of the property or an empty string if it is not defined
+	 * @throws IllegalArgumentException if the definition is recursive
+	 */
+	public String get(String name) {
+		return value(name.toLowerCase(Locale.ROOT));
+	}
+
+	/** @return true if the property is defined by the project, as global property, or as reserved property */
+	public boolean isDefined(String name) {
+		String key = name.toLowerCase(Locale.ROOT);
+		return globalProperties.containsKey(key) || definitions().containsKey(key) || reservedProperties.containsKey(key);
+	}
+
+	/**
+	 * Expand the property references of a value, e.g., one obtained from {@link ConfigurationWrapper}
+	 *
+	 * @throws IllegalArgumentException if the definition of a referenced property is recursive
+	 */
+	public String expand(String value) {
+		Template template = templates.computeIfAbsent(value, Template::parse);
+		if (template.references.length == 0) {
+			return value;
+		}
+		StringBuilder sb = new StringBuilder(template.literals[0]);
+		for (int i = 0; i < template.references.length; i++) {
+			sb.append(value(template.references[i])).append(template.literals[i + 1]);
+		}
+		return sb.toString();
+	}
+
+	/** @return the expanded values */
+	public List<String> expand(List<String> values) {
+		List<String> r = new ArrayList<>(values.size());
+		for (String value : values) {
+			r.add(expand(value));
+		}
+		return r;
+	}
+
+	/**
+	 * Set the unexpanded value of a property in the project
+	 *
+	 * <p>The last definition of the property is changed. If the project does not define the property, it is added to
+	 * the property group of the configuration. Only the memoized values that depend on the property are discarded.</p>
+	 */
+	public void put(String name, String value) {
+		Definition definition = definitions().get(name.toLowerCase(Locale.ROOT));
+		if (definition != null) {
+			Node node = definition.node;
+			if (X.isStringElement(node)) {
+				X.set(node, value);
+			} else {
+				node.appendChild(node.getOwnerDocument().createTextNode(value));
+			}
+		} else {
+			PropertyGroupWrapper propertyGroup = project.getConfiguration(configuration).propertyGroup;
+			if (propertyGroup == null) {
+				throw new IllegalArgumentException("No property group for configuration '" + configuration + "'");
+			}
+			X.addStringElement(propertyGroup.propertyGroup, name, value);
+		}
+		invalidate(name);
+	}
+
+	/** Read the definitions of the property again and discard the memoized values that depend on it */
+	public void invalidate(String name) {
+		String key = name.toLowerCase(Locale.ROOT);
+		if (definitions != null) {
+			Definition definition = null;
+			for (Node node : propertyNodes()) {
+				if (node.getLocalName().toLowerCase(Locale.ROOT).equals(key)) {
+					definition = definition(node, definition);
+				}
+			}
+			if (definition != null) {
+				definitions.put(key, definition);
+			} else {
+				definitions.remove(key);
+			}
+		}
+		Deque<String> pending = new ArrayDeque<>();
+		pending.add(key);
+		Set<String> done = new HashSet<>();
+		while (!pending.isEmpty()) {
+			String k = pending.removeFirst();
+			if (done.add(k)) {
+				values.remove(k);
+				Set<String> d = dependents.remove(k);
+				if (d != null) {
+					pending.addAll(d);
+				}
+			}
+		}
+	}
+
+	/** Read all definitions again and discard all memoized values */
+	public void invalidate() {
+		definitions = null;
+		values.clear();
+		dependents.clear();
+	}
+
+	private Map<String, Definition> definitions() {
+		if (definitions == null) {
+			Map<String, Definition> r = new HashMap<>();
+			for (Node node : propertyNodes()) {
+				String key = node.getLocalName().toLowerCase(Locale.ROOT);
+				r.put(key, definition(node, r.get(key)));
+			}
+			definitions = r;
+		}
+		return definitions;
+	}
+
+	private Definition definition(Node node, Definition previous) {
+		String text = X.isStringElement(node) ? X.string(node) : "";
+		return new Definition(node, templates.computeIfAbsent(text, Template::parse), previous);
+	}
+
+	/** @return the property elements of the applicable property groups in document order */
+	private List<Node> propertyNodes() {
+		List<Node> r = new ArrayList<>();
+		for (PropertyGroupType pg : project.getConfiguration(configuration).propertyGroups) {
+			for (Node child = pg.getDomNode().getFirstChild(); child != null; child = child.getNextSibling()) {
+				// like ProjectSnapshot, elements with other content than text are ignored
+				if (child.getNodeType() == Node.ELEMENT_NODE && (child.getFirstChild() == null || X.isStringElement(child))) {
+					r.add(child);
+				}
+			}
+		}
+		return r;
+	}
+
+	private String value(String key) {
+		String value = values.get(key);
+		if (value != null) {
+			return value;
+		}
+		value = globalProperties.get(key);
+		if (value != null) {
+			return value;
+		}
+		Definition definition = definitions().get(key);
+		if (definition == null) {
+			return reservedProperties.getOrDefault(key, "");
+		}
+		if (!evaluating.add(key)) {
+			List<String> cycle = new ArrayList<>(evaluating);
+			cycle = cycle.subList(cycle.indexOf(key), cycle.size());
+			cycle.add(key);
+			throw new IllegalArgumentException("Recursive definition of property: " + String.join(" -> ", cycle));
+		}
+		try {
+			value = evaluate(key, definition);
+		} finally {
+			evaluating.remove(key);
+		}
+		values.put(key, value);
+		return value;
+	}
+
+	private String evaluate(String key, Definition definition) {
+		Template template = definition.template;
+		if (template.references.length == 0) {
+			return template.literals[0];
+		}
+		StringBuilder sb = new StringBuilder(template.literals[0]);
+		for (int i = 0; i < template.references.length; i++) {
+			String reference = template.references[i];
+			if (reference.equals(key)) {
+				// refers to the previous definition
+				sb.append(definition.previous != null ? evaluate(key, definition.previous) : reservedProperties.getOrDefault(key, ""));
+			} else {
+				dependents.computeIfAbsent(reference, k -> new HashSet<>()).add(key);
+				sb.append(value(reference));
+			}
+			sb.append(template.literals[i + 1]);
+		}
+		return sb.toString();
+	}
+}
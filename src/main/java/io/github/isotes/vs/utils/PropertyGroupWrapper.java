@@ -7,6 +7,7 @@ package io.github.isotes.vs.utils;
 
 import io.github.isotes.vs.model.PropertyGroupType;
 import org.apache.xmlbeans.XmlObject;
+import org.w3c.dom.Node;
 
 import java.util.*;
 
@@ -16,17 +17,51 @@ import java.util.*;
  * <p>This class uses the {@link PropertyGroupType#getPropertyList()} accessor and, therefore, only contains properties
  * that are known to the schema. For property groups with arbitrary elements, e.g., 'UserMacros', use the
  * {@link GenericPropertyGroup} class which operates on directly on the underlying XML. </p>
+ *
+ * <p>Keyed access uses an index of the properties that is built on first use and kept up to date by the
+ * modifications of this map. Appending elements through other means is detected as well; after other structural
+ * changes of the underlying XML, call {@link #invalidate()}.</p>
  */
 public class PropertyGroupWrapper extends AbstractMap<String, String> {
 
 	public final PropertyGroupType propertyGroup;
 	private final InnerSet innerSet = new InnerSet();
+	// first property for each name
+	private Map<String, XmlObject> index;
+	private Node indexedLastChild;
 
 	public PropertyGroupWrapper(PropertyGroupType propertyGroup) {
 		this.propertyGroup = propertyGroup;
 	}
 
-	private static class IteratorWrapper implements Iterator<Entry<String, String>> {
+	private Map<String, XmlObject> index() {
+		Node lastChild = propertyGroup.getDomNode().getLastChild();
+		if (index == null || lastChild != indexedLastChild) {
+			Map<String, XmlObject> index = new HashMap<>();
+			for (XmlObject xo : propertyGroup.getPropertyList()) {
+				index.putIfAbsent(X.elementName(xo), xo);
+			}
+			this.index = index;
+			this.indexedLastChild = lastChild;
+		}
+		return index;
+	}
+
+	private XmlObject property(Object key) {
+		XmlObject xo = index().get(key);
+		if (xo != null && xo.getDomNode().getParentNode() != propertyGroup.getDomNode()) {
+			invalidate();
+			xo = index().get(key);
+		}
+		return xo;
+	}
+
+	/** Discard the index of the properties, e.g., after the underlying XML has been changed directly */
+	public void invalidate() {
+		index = null;
+	}
+
+	private class IteratorWrapper implements Iterator<Entry<String, String>> {
 		private final Iterator<XmlObject> wrapped;
 
 		private IteratorWrapper(Iterator<XmlObject> wrapped) {
@@ -47,6 +82,7 @@ public class PropertyGroupWrapper extends AbstractMap<String, String> {
 		@Override
 		public void remove() {
 			wrapped.remove();
+			invalidate();
 		}
 	}
 
@@ -69,16 +105,43 @@ public class PropertyGroupWrapper extends AbstractMap<String, String> {
 		return innerSet;
 	}
 
+	@Override
+	public String get(Object key) {
+		XmlObject xo = property(key);
+		return xo != null ? X.getString(xo) : null;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return property(key) != null;
+	}
+
 	@Override
 	public String put(String key, String value) {
-		for (XmlObject xo : propertyGroup.getPropertyList()) {
-			if (Objects.equals(key, X.elementName(xo))) {
-				String old = X.getString(xo);
+		XmlObject xo = property(key);
+		if (xo != null) {
+			String old = X.getString(xo);
+			if (!old.equals(value)) {
+				// writing the same value would still count as a modification of the document
 				X.set(xo, value);
-				return old;
 			}
+			return old;
 		}
 		X.addStringElement(propertyGroup, key, value);
+		invalidate();
 		return null;
 	}
+
+	@Override
+	public String remove(Object key) {
+		XmlObject xo = property(key);
+		if (xo == null) {
+			return null;
+		}
+		String old = X.getString(xo);
+		Node node = xo.getDomNode();
+		node.getParentNode().removeChild(node);
+		invalidate();
+		return old;
+	}
 }
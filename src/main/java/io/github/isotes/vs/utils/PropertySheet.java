@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2020 Robert Sauter
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.isotes.vs.utils;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable content of an imported MSBuild file, e.g., a .props property sheet, as used by {@link ImportResolver}
+ *
+ * <p>The file is read with a streaming parser like {@link ProjectReader} and only the property groups, the item
+ * definition groups, and the imports are kept together with their conditions. The position of each element among the
+ * children of the project element preserves the document order across the lists; the imports of an import group
+ * share the position of the group.</p>
+ */
+public class PropertySheet {
+	/** A PropertyGroup; if a property occurs multiple times, the last one determines the value */
+	public static class PropertyGroup {
+		public final int position;
+		public final String condition;
+		public final String label;
+		public final Map<String, String> properties;
+
+		private PropertyGroup(int position, String condition, String label, Map<String, String> properties) {
+			this.position = position;
+			this.condition = condition;
+			this.label = label;
+			this.properties = Collections.unmodifiableMap(properties);
+		}
+	}
+
+	/** An ItemDefinitionGroup with the metadata by item type, e.g., ClCompile */
+	public static class ItemDefinitionGroup {
+		public final int position;
+		public final String condition;
+		public final Map<String, Map<String, String>> items;
+
+		private ItemDefinitionGroup(int position, String condition, Map<String, Map<String, String>> items) {
+			this.position = position;
+			this.condition = condition;
+			this.items = Collections.unmodifiableMap(items);
+		}
+	}
+
+	/** An Import element either directly below the project element or in an ImportGroup */
+	public static class Import {
+		public final int position;
+		/** The unexpanded Project attribute */
+		public final String project;
+		public final String condition;
+		/** The condition of the enclosing import group or null */
+		public final String groupCondition;
+		/** The label of the enclosing import group or null */
+		public final String groupLabel;
+
+		private Import(int position, String project, String condition, String groupCondition, String groupLabel) {
+			this.position = position;
+			this.project = project;
+			this.condition = condition;
+			this.groupCondition = groupCondition;
+			this.groupLabel = groupLabel;
+		}
+	}
+
+	public final Path path;
+	public final List<PropertyGroup> propertyGroups;
+	public final List<ItemDefinitionGroup> itemDefinitionGroups;
+	public final List<Import> imports;
+
+	private PropertySheet(Path path, List<PropertyGroup> propertyGroups, List<ItemDefinitionGroup> itemDefinitionGroups,
+			List<Import> imports) {
+		this.path = path;
+		this.propertyGroups = Collections.unmodifiableList(propertyGroups);
+		this.itemDefinitionGroups = Collections.unmodifiableList(itemDefinitionGroups);
+		this.imports = Collections.unmodifiableList(imports);
+	}
+
+	/**
+	 * @param path the file to read
+	 * @throws IllegalArgumentException if the file cannot be read or parsed
+	 */
+	public static PropertySheet read(Path path) {
+		MappedTextFile textFile = new MappedTextFile(path);
+		List<PropertyGroup> propertyGroups = new ArrayList<>();
+		List<ItemDefinitionGroup> itemDefinitionGroups = new ArrayList<>();
+		List<Import> imports = new ArrayList<>();
+		try {
+			XMLStreamReader reader = ProjectReader.createReader(textFile);
+			try {
+				if (reader.nextTag() != XMLStreamConstants.START_ELEMENT || !"Project".equals(reader.getLocalName())) {
+					throw new IllegalArgumentException("Parsing " + path + " failed: expected Project element");
+				}
+				for (int position = 0; reader.nextTag() == XMLStreamConstants.START_ELEMENT; position++) {
+					String name = reader.getLocalName();
+					String condition = reader.getAttributeValue(null, "Condition");
+					if (name.equals("PropertyGroup")) {
+						String label = reader.getAttributeValue(null, "Label");
+						propertyGroups.add(new PropertyGroup(position, condition, label, ProjectReader.elements(reader)));
+					} else if (name.equals("ItemDefinitionGroup")) {
+						Map<String, Map<String, String>> items = new LinkedHashMap<>();
+						while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+							// the last element of an item type determines the metadata
+							items.put(reader.getLocalName(), Collections.unmodifiableMap(ProjectReader.elements(reader)));
+						}
+						itemDefinitionGroups.add(new ItemDefinitionGroup(position, condition, items));
+					} else if (name.equals("Import")) {
+						imports.add(new Import(position, reader.getAttributeValue(null, "Project"), condition, null, null));
+						ProjectReader.skip(reader, 1);
+					} else if (name.equals("ImportGroup")) {
+						String label = reader.getAttributeValue(null, "Label");
+						while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+							if (reader.getLocalName().equals("Import")) {
+								imports.add(new Import(position, reader.getAttributeValue(null, "Project"),
+										reader.getAttributeValue(null, "Condition"), condition, label));
+							}
+							ProjectReader.skip(reader, 1);
+						}
+					} else {
+						ProjectReader.skip(reader, 1);
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		} catch (XMLStreamException e) {
+			throw new IllegalArgumentException("Parsing " + path + " failed: " + e.getMessage(), e);
+		}
+		return new PropertySheet(path, propertyGroups, itemDefinitionGroups, imports);
+	}
+}
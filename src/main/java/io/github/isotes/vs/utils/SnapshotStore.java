@@ -0,0 +1,487 @@
+/*
+ * Copyright (c) 2020 Robert Sauter
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.isotes.vs.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Compact binary store of solution and project snapshots to start without parsing XML
+ *
+ * <p>{@link #write(Path, SolutionSnapshot, Collection)} stores snapshots created by {@link #loadSolution(Path)} and
+ * {@link #loadProject(Path)} together with the size, modification time, and SHA-256 hash of the file content they
+ * have been created from. Opening the store reads the file into memory without keeping it open, so the store can be
+ * written back to the same path, and only decodes the string table; snapshots are decoded on request. A stored
+ * snapshot is only returned if its source file still has the recorded content: like {@link ProjectCache}, the file
+ * is only read and hashed if its size or modification time differ or the modification time was too close to the
+ * time the content was read to be reliable. Otherwise, the load methods fall back to parsing the file. Stored project snapshots do not contain the XML document: {@link ProjectSnapshot#thaw()} parses
+ * the project file.</p>
+ *
+ * <p>Format (big-endian): magic, version, string table (count, then length and UTF-8 bytes of each string), entry
+ * table (count, then kind, path, size, modification time, time of reading, hash, offset, and length of each entry),
+ * and the entries that refer to strings by their index in the table.</p>
+ */
+public class SnapshotStore {
+	private static final int MAGIC = 0x56535342;  // VSSB
+	private static final int VERSION = 2;
+	private static final byte SOLUTION = 1;
+	private static final byte PROJECT = 2;
+	private static final int HASH_LENGTH = 32;
+
+	/** The file content a snapshot has been created from */
+	static final class Stamp {
+		final long size;
+		final long modified;
+		// the time the content has been read
+		final long checked;
+		final byte[] hash;
+
+		Stamp(long size, long modified, long checked, byte[] hash) {
+			this.size = size;
+			this.modified = modified;
+			this.checked = checked;
+			this.hash = hash;
+		}
+
+		/** @return whether the file still has the content, only reading it if the attributes are not conclusive */
+		boolean matches(Path file) throws IOException {
+			BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+			if (attributes.size() != size) {
+				return false;
+			}
+			if (attributes.lastModifiedTime().toMillis() == modified && modified + ProjectCache.MTIME_GRANULARITY_MILLIS < checked) {
+				return true;
+			}
+			return Arrays.equals(hash, ProjectCache.sha256(Files.readAllBytes(file)));
+		}
+	}
+
+	private static final class Entry {
+		final byte kind;
+		final Stamp stamp;
+		final int offset;
+		final int length;
+
+		Entry(byte kind, Stamp stamp, int offset, int length) {
+			this.kind = kind;
+			this.stamp = stamp;
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+
+	public final Path path;
+	private final ByteBuffer buffer;
+	private final String[] strings;
+	private final Map<Path, Entry> entries = new HashMap<>();
+
+	/**
+	 * Open a store; a missing or invalid store is treated as empty
+	 *
+	 * @param path the file written by {@link #write(Path, SolutionSnapshot, Collection)}
+	 */
+	public SnapshotStore(Path path) {
+		this.path = path;
+		ByteBuffer buffer = ByteBuffer.allocate(0);
+		String[] strings = new String[0];
+		try {
+			// not memory-mapped: a mapping is only released by the garbage collector and prevents replacing the file on
+			// Windows
+			ByteBuffer content = ByteBuffer.wrap(Files.readAllBytes(path));
+			if (content.remaining() >= 8 && content.getInt() == MAGIC && content.getInt() == VERSION) {
+				strings = new String[content.getInt()];
+				for (int i = 0; i < strings.length; i++) {
+					byte[] bytes = new byte[content.getInt()];
+					content.get(bytes);
+					strings[i] = new String(bytes, StandardCharsets.UTF_8);
+				}
+				int n = content.getInt();
+				for (int i = 0; i < n; i++) {
+					byte kind = content.get();
+					String source = strings[content.getInt()];
+					long size = content.getLong();
+					long modified = content.getLong();
+					long checked = content.getLong();
+					byte[] hash = new byte[HASH_LENGTH];
+					content.get(hash);
+					Stamp stamp = new Stamp(size, modified, checked, hash);
+					entries.put(Paths.get(source), new Entry(kind, stamp, content.getInt(), content.getInt()));
+				}
+				buffer = content.slice();
+			}
+		} catch (NoSuchFileException e) {
+			// empty
+		} catch (IOException | RuntimeException e) {
+			// a truncated or otherwise invalid store is ignored like a missing one
+			entries.clear();
+		}
+		this.buffer = buffer;
+		this.strings = strings;
+	}
+
+	/** @return the stored snapshot of the solution if its file has not changed since it has been stored */
+	public Optional<SolutionSnapshot> solution(Path sln) {
+		Reader reader = reader(sln, SOLUTION);
+		try {
+			return reader != null ? Optional.of(reader.solution()) : Optional.empty();
+		} catch (RuntimeException e) {
+			// a corrupt entry is treated like a missing one
+			return Optional.empty();
+		}
+	}
+
+	/** @return the stored snapshot of the project if its file has not changed since it has been stored */
+	public Optional<ProjectSnapshot> project(Path vcxproj) {
+		Reader reader = reader(vcxproj, PROJECT);
+		try {
+			return reader != null ? Optional.of(reader.project()) : Optional.empty();
+		} catch (RuntimeException e) {
+			// a corrupt entry is treated like a missing one
+			return Optional.empty();
+		}
+	}
+
+	/** @return the stored snapshot of the solution or, if not available or outdated, a snapshot of the parsed file */
+	public SolutionSnapshot loadSolution(Path sln) {
+		return solution(sln).orElseGet(() -> parseSolution(sln));
+	}
+
+	/** @return the stored snapshot of the project or, if not available or outdated, a snapshot of the parsed file */
+	public ProjectSnapshot loadProject(Path vcxproj) {
+		return project(vcxproj).orElseGet(() -> parseProject(vcxproj));
+	}
+
+	private static SolutionSnapshot parseSolution(Path sln) {
+		Source source = Source.read(sln);
+		return new VsSolution(sln, new ByteArrayInputStream(source.content)).freeze().withSource(source.stamp);
+	}
+
+	private static ProjectSnapshot parseProject(Path vcxproj) {
+		Source source = Source.read(vcxproj);
+		return new ProjectWrapper(new TextFile(vcxproj, source.content, StandardCharsets.UTF_8)).freeze().withSource(source.stamp);
+	}
+
+	/** The content of a file together with its stamp */
+	private static final class Source {
+		final byte[] content;
+		final Stamp stamp;
+
+		private Source(byte[] content, Stamp stamp) {
+			this.content = content;
+			this.stamp = stamp;
+		}
+
+		static Source read(Path file) {
+			try {
+				BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+				long checked = System.currentTimeMillis();
+				byte[] content = Files.readAllBytes(file);
+				// the attributes are read first so that a concurrent modification results in a mismatch later on
+				return new Source(content, new Stamp(content.length, attributes.lastModifiedTime().toMillis(), checked,
+						ProjectCache.sha256(content)));
+			} catch (IOException e) {
+				throw new IllegalArgumentException("Reading " + file + " failed: " + e.getMessage(), e);
+			}
+		}
+	}
+
+	private Reader reader(Path source, byte kind) {
+		Entry entry = entries.get(normalize(source));
+		if (entry == null || entry.kind != kind) {
+			return null;
+		}
+		try {
+			if (!entry.stamp.matches(source)) {
+				return null;
+			}
+		} catch (IOException e) {
+			return null;
+		}
+		ByteBuffer data = buffer.duplicate();
+		data.position(entry.offset);
+		data.limit(entry.offset + entry.length);
+		return new Reader(data.slice(), entry.stamp);
+	}
+
+	/**
+	 * Write a store with the snapshots, replacing the file atomically
+	 *
+	 * @param path the store file
+	 * @param solution the snapshot of the solution or null
+	 * @param projects the snapshots of projects
+	 * @throws IllegalArgumentException if a snapshot has not been created by {@link #loadSolution(Path)} or
+	 * {@link #loadProject(Path)}, i.e., the file content it corresponds to is unknown
+	 */
+	public static void write(Path path, SolutionSnapshot solution, Collection<ProjectSnapshot> projects) {
+		try {
+			Writer writer = new Writer();
+			if (solution != null) {
+				writer.solution(solution);
+			}
+			for (ProjectSnapshot project : projects) {
+				writer.project(project);
+			}
+			ByteArrayOutputStream content = new ByteArrayOutputStream();
+			writer.writeTo(content);
+			FileUpdate.writeIfChanged(path, content.toByteArray());
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Saving snapshots to " + path + " failed: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Write a store with the solution and all successfully loaded projects
+	 *
+	 * <p>The snapshots are created from the files, i.e., modifications that have not been saved are not stored.</p>
+	 */
+	public static void write(Path path, LoadedSolution loaded) {
+		List<ProjectSnapshot> projects = new ArrayList<>();
+		for (ProjectWrapper pw : loaded.projects.values()) {
+			projects.add(parseProject(pw.path));
+		}
+		write(path, parseSolution(loaded.solution.path), projects);
+	}
+
+	private static Path normalize(Path path) {
+		return path.toAbsolutePath().normalize();
+	}
+
+	private static final class Writer {
+		private final Map<String, Integer> stringIndex = new HashMap<>();
+		private final List<String> strings = new ArrayList<>();
+		private final ByteArrayOutputStream entryData = new ByteArrayOutputStream();
+		private final DataOutputStream out = new DataOutputStream(entryData);
+		private final ByteArrayOutputStream entryTable = new ByteArrayOutputStream();
+		private final DataOutputStream table = new DataOutputStream(entryTable);
+		private int entryCount;
+
+		void solution(SolutionSnapshot solution) throws IOException {
+			int start = out.size();
+			string(solution.path.toString());
+			string(solution.newline);
+			out.writeBoolean(solution.hasBom);
+			strings(solution.headerLines);
+			out.writeInt(solution.projects.size());
+			for (SolutionSnapshot.Project project : solution.projects) {
+				out.writeInt(project.firstLine);
+				string(project.typeGuid);
+				string(project.name);
+				string(project.fileName);
+				string(project.guid);
+				string(project.path.toString());
+				sections(project.sections);
+			}
+			sections(solution.globalSections);
+			entry(SOLUTION, solution.path, solution.source, start);
+		}
+
+		void project(ProjectSnapshot project) throws IOException {
+			int start = out.size();
+			string(project.path.toString());
+			string(project.newline);
+			out.writeBoolean(project.hasBom);
+			out.writeInt(project.configurations.size());
+			for (ProjectSnapshot.Configuration cfg : project.configurations) {
+				string(cfg.name);
+				string(cfg.configuration);
+				string(cfg.platform);
+				map(cfg.properties);
+				map(cfg.clCompile);
+				map(cfg.link);
+				map(cfg.lib);
+			}
+			map(project.globals);
+			map(project.userMacros);
+			out.writeInt(project.items.size());
+			for (Map.Entry<String, List<String>> e : project.items.entrySet()) {
+				string(e.getKey());
+				strings(e.getValue());
+			}
+			entry(PROJECT, project.path, project.source, start);
+		}
+
+		private void entry(byte kind, Path source, Stamp stamp, int start) throws IOException {
+			if (stamp == null) {
+				throw new IllegalArgumentException("The file content of the snapshot of " + source + " is unknown");
+			}
+			table.writeByte(kind);
+			string(table, normalize(source).toString());
+			table.writeLong(stamp.size);
+			table.writeLong(stamp.modified);
+			table.writeLong(stamp.checked);
+			table.write(stamp.hash);
+			table.writeInt(start);
+			table.writeInt(out.size() - start);
+			entryCount++;
+		}
+
+		private void sections(List<SolutionSnapshot.Section> sections) throws IOException {
+			out.writeInt(sections.size());
+			for (SolutionSnapshot.Section section : sections) {
+				out.writeInt(section.firstLine);
+				string(section.tagIndent);
+				string(section.tag);
+				string(section.label);
+				string(section.when);
+				string(section.contentIndent);
+				strings(section.content);
+			}
+		}
+
+		private void map(Map<String, String> map) throws IOException {
+			out.writeInt(map.size());
+			for (Map.Entry<String, String> e : map.entrySet()) {
+				string(e.getKey());
+				string(e.getValue());
+			}
+		}
+
+		private void strings(List<String> list) throws IOException {
+			out.writeInt(list.size());
+			for (String s : list) {
+				string(s);
+			}
+		}
+
+		private void string(String s) throws IOException {
+			string(out, s);
+		}
+
+		/** Write the index of the string in the table or -1 for null */
+		private void string(DataOutputStream target, String s) throws IOException {
+			if (s == null) {
+				target.writeInt(-1);
+				return;
+			}
+			Integer index = stringIndex.get(s);
+			if (index == null) {
+				index = strings.size();
+				strings.add(s);
+				stringIndex.put(s, index);
+			}
+			target.writeInt(index);
+		}
+
+		void writeTo(OutputStream target) throws IOException {
+			DataOutputStream data = new DataOutputStream(target);
+			data.writeInt(MAGIC);
+			data.writeInt(VERSION);
+			data.writeInt(strings.size());
+			for (String s : strings) {
+				byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+				data.writeInt(bytes.length);
+				data.write(bytes);
+			}
+			data.writeInt(entryCount);
+			entryTable.writeTo(data);
+			entryData.writeTo(data);
+			data.flush();
+		}
+	}
+
+	private final class Reader {
+		private final ByteBuffer data;
+		private final Stamp stamp;
+
+		Reader(ByteBuffer data, Stamp stamp) {
+			this.data = data;
+			this.stamp = stamp;
+		}
+
+		SolutionSnapshot solution() {
+			VsSolution solution = new VsSolution();
+			Path path = Paths.get(string());
+			solution.path = path;
+			solution.newline = string();
+			solution.hasBom = data.get() != 0;
+			solution.headerLines.addAll(strings());
+			int n = data.getInt();
+			for (int i = 0; i < n; i++) {
+				int firstLine = data.getInt();
+				VsSolutionProject project = new VsSolutionProject(firstLine, Paths.get(""), string(), string(), string(), string());
+				project.path = Paths.get(string());
+				project.sections.addAll(sections());
+				solution.projects.add(project);
+			}
+			solution.globalSections.addAll(sections());
+			return solution.freeze().withSource(stamp);
+		}
+
+		ProjectSnapshot project() {
+			Path path = Paths.get(string());
+			String newline = string();
+			boolean hasBom = data.get() != 0;
+			int n = data.getInt();
+			List<ProjectSnapshot.Configuration> configurations = new ArrayList<>(n);
+			for (int i = 0; i < n; i++) {
+				configurations.add(new ProjectSnapshot.Configuration(string(), string(), string(), map(), map(), map(), map()));
+			}
+			Map<String, String> globals = Collections.unmodifiableMap(map());
+			Map<String, String> userMacros = Collections.unmodifiableMap(map());
+			int types = data.getInt();
+			Map<String, List<String>> items = new LinkedHashMap<>();
+			for (int i = 0; i < types; i++) {
+				items.put(string(), Collections.unmodifiableList(strings()));
+			}
+			return new ProjectSnapshot(path, newline, hasBom, Collections.unmodifiableList(configurations), globals,
+					userMacros, Collections.unmodifiableMap(items), null, stamp);
+		}
+
+		private List<VsSolutionSection> sections() {
+			int n = data.getInt();
+			List<VsSolutionSection> sections = new ArrayList<>(n);
+			for (int i = 0; i < n; i++) {
+				VsSolutionSection section = new VsSolutionSection(data.getInt(), string(), string(), string(), string());
+				section.contentIndent = string();
+				section.content.addAll(strings());
+				sections.add(section);
+			}
+			return sections;
+		}
+
+		private Map<String, String> map() {
+			int n = data.getInt();
+			Map<String, String> map = new LinkedHashMap<>();
+			for (int i = 0; i < n; i++) {
+				map.put(string(), string());
+			}
+			return map;
+		}
+
+		private List<String> strings() {
+			int n = data.getInt();
+			List<String> list = new ArrayList<>(n);
+			for (int i = 0; i < n; i++) {
+				list.add(string());
+			}
+			return list;
+		}
+
+		private String string() {
+			int index = data.getInt();
+			return index < 0 ? null : strings[index];
+		}
+	}
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) 2020 Robert Sauter
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.isotes.vs.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Typed view of the SolutionConfigurationPlatforms and ProjectConfigurationPlatforms global sections of a solution
+ *
+ * <p>The sections are parsed once. The project configuration used for each pair of project GUID and solution
+ * configuration is available as {@link Mapping} with constant time lookups. Modify the mappings and the solution
+ * configurations and call {@link #write()} to update the content of the sections: existing lines are kept in their
+ * original order, lines of new mappings follow the last line of the same project, and lines that cannot be parsed are
+ * kept unchanged. Changes to the sections that are not made via the table are lost on {@link #write()}.</p>
+ */
+public class SolutionConfigurationTable {
+	public static final String SOLUTION_SECTION = "SolutionConfigurationPlatforms";
+	public static final String PROJECT_SECTION = "ProjectConfigurationPlatforms";
+	private static final String[] KINDS = {"ActiveCfg", "Build.0", "Deploy.0"};
+
+	/** The project configuration of a project in a solution configuration, e.g., Release|x64 */
+	public static class Mapping {
+		/** The GUID of the project as written in the solution */
+		public final String guid;
+		public final String solutionConfiguration;
+		/** The project configuration, e.g., Release|Win32, or null if there is no ActiveCfg line */
+		public String activeCfg;
+		/** The value of the Build.0 line or null if the project is not built in the solution configuration */
+		public String build;
+		/** The value of the Deploy.0 line or null if the project is not deployed in the solution configuration */
+		public String deploy;
+		private boolean removed;
+
+		private Mapping(String guid, String solutionConfiguration) {
+			this.guid = guid;
+			this.solutionConfiguration = solutionConfiguration;
+		}
+
+		/** Set all values to the project configuration, i.e., build and deploy it in the solution configuration */
+		public void set(String projectConfiguration, boolean build, boolean deploy) {
+			this.activeCfg = projectConfiguration;
+			this.build = build ? projectConfiguration : null;
+			this.deploy = deploy ? projectConfiguration : null;
+		}
+
+		private String value(int kind) {
+			return kind == 0 ? activeCfg : kind == 1 ? build : deploy;
+		}
+
+		private void value(int kind, String value) {
+			if (kind == 0) {
+				activeCfg = value;
+			} else if (kind == 1) {
+				build = value;
+			} else {
+				deploy = value;
+			}
+		}
+
+		@Override
+		public String toString() {
+			return guid + "." + solutionConfiguration + " = " + activeCfg;
+		}
+	}
+
+	/** A line of the project section: either a value of a mapping or an unparsed line */
+	private static class Line {
+		final Mapping mapping;
+		final int kind;
+		final String raw;
+
+		Line(Mapping mapping, int kind, String raw) {
+			this.mapping = mapping;
+			this.kind = kind;
+			this.raw = raw;
+		}
+	}
+
+	public final VsSolution solution;
+	/** The solution configurations in the order of the solution, e.g., Debug|x64 */
+	public final List<String> solutionConfigurations = new ArrayList<>();
+	private final Map<List<String>, Mapping> byKey = new HashMap<>();
+	private final Map<String, List<Mapping>> byProject = new LinkedHashMap<>();
+	private List<Line> lines = new ArrayList<>();
+
+	/** @param solution the solution; missing sections are treated as empty */
+	public SolutionConfigurationTable(VsSolution solution) {
+		this.solution = solution;
+		solution.globalSection(SOLUTION_SECTION, "preSolution").ifPresent(section -> {
+			for (String line : section.content) {
+				int eq = line.indexOf('=');
+				solutionConfigurations.add((eq < 0 ? line : line.substring(0, eq)).trim());
+			}
+		});
+		solution.globalSection(PROJECT_SECTION, "postSolution").ifPresent(section -> {
+			for (String line : section.content) {
+				lines.add(parse(line));
+			}
+		});
+	}
+
+	private Line parse(String line) {
+		int eq = line.indexOf('=');
+		if (eq > 0) {
+			String key = line.substring(0, eq).trim();
+			int guidEnd = key.indexOf('.');
+			for (int kind = 0; kind < KINDS.length && guidEnd > 0; kind++) {
+				String suffix = "." + KINDS[kind];
+				// solution configurations may contain '.', so the kind is taken from the end
+				if (key.endsWith(suffix) && key.length() - suffix.length() > guidEnd) {
+					String guid = key.substring(0, guidEnd);
+					String configuration = key.substring(guidEnd + 1, key.length() - suffix.length());
+					Mapping mapping = byKey.get(key(guid, configuration));
+					if (mapping == null) {
+						mapping = index(new Mapping(guid, configuration));
+					}
+					mapping.value(kind, line.substring(eq + 1).trim());
+					return new Line(mapping, kind, null);
+				}
+			}
+		}
+		return new Line(null, -1, line);
+	}
+
+	private static List<String> key(String guid, String solutionConfiguration) {
+		return Arrays.asList(guid.toUpperCase(), solutionConfiguration);
+	}
+
+	private Mapping index(Mapping mapping) {
+		byKey.put(key(mapping.guid, mapping.solutionConfiguration), mapping);
+		byProject.computeIfAbsent(mapping.guid.toUpperCase(), k -> new ArrayList<>()).add(mapping);
+		return mapping;
+	}
+
+	/**
+	 * @param guid the GUID of the project, matched case-insensitively
+	 * @param solutionConfiguration the solution configuration, e.g., Release|x64
+	 * @return the mapping or null if there is none
+	 */
+	public Mapping get(String guid, String solutionConfiguration) {
+		return byKey.get(key(guid, solutionConfiguration));
+	}
+
+	/** @return the existing mapping or a new one without values using the GUID as written in other mappings */
+	public Mapping getOrAdd(String guid, String solutionConfiguration) {
+		Mapping mapping = get(guid, solutionConfiguration);
+		if (mapping != null) {
+			return mapping;
+		}
+		List<Mapping> sameProject = byProject.get(guid.toUpperCase());
+		return index(new Mapping(sameProject != null ? sameProject.get(0).guid : guid, solutionConfiguration));
+	}
+
+	/** @return the mappings of the project in the order of the solution */
+	public List<Mapping> byProject(String guid) {
+		return Collections.unmodifiableList(byProject.getOrDefault(guid.toUpperCase(), Collections.emptyList()));
+	}
+
+	/** @return all mappings grouped by project */
+	public List<Mapping> mappings() {
+		List<Mapping> r = new ArrayList<>();
+		for (List<Mapping> mappings : byProject.values()) {
+			r.addAll(mappings);
+		}
+		return r;
+	}
+
+	/** @return false if there is no such mapping */
+	public boolean remove(String guid, String solutionConfiguration) {
+		Mapping mapping = byKey.remove(key(guid, solutionConfiguration));
+		if (mapping == null) {
+			return false;
+		}
+		mapping.removed = true;
+		List<Mapping> mappings = byProject.get(guid.toUpperCase());
+		mappings.remove(mapping);
+		if (mappings.isEmpty()) {
+			byProject.remove(guid.toUpperCase());
+		}
+		return true;
+	}
+
+	/** Remove all mappings of a project, e.g., after removing the project from the solution */
+	public void removeProject(String guid) {
+		for (Mapping mapping : new ArrayList<>(byProject(guid))) {
+			remove(mapping.guid, mapping.solutionConfiguration);
+		}
+	}
+
+	/**
+	 * Write the solution configurations and mappings to the global sections of the solution
+	 *
+	 * <p>Sections that do not exist are added at the start of the global sections unless they would be empty.</p>
+	 */
+	public void write() {
+		VsSolutionSection solutionSection = section(SOLUTION_SECTION, "preSolution", 0, !solutionConfigurations.isEmpty());
+		if (solutionSection != null) {
+			solutionSection.content.clear();
+			for (String configuration : solutionConfigurations) {
+				solutionSection.content.add(configuration + " = " + configuration);
+			}
+		}
+
+		// the last line of each mapping and project to insert new values and mappings after them
+		Map<Mapping, Integer> lastOfMapping = new IdentityHashMap<>();
+		Map<String, Integer> lastOfProject = new HashMap<>();
+		// the kinds with a line by mapping
+		Map<Mapping, boolean[]> present = new IdentityHashMap<>();
+		for (int i = 0; i < lines.size(); i++) {
+			Mapping mapping = lines.get(i).mapping;
+			if (mapping != null && !mapping.removed) {
+				lastOfMapping.put(mapping, i);
+				present.computeIfAbsent(mapping, k -> new boolean[KINDS.length])[lines.get(i).kind] = true;
+				lastOfProject.put(mapping.guid.toUpperCase(), i);
+			}
+		}
+		Map<Integer, List<Mapping>> addedAfter = new HashMap<>();
+		List<Mapping> addedAtEnd = new ArrayList<>();
+		for (Map.Entry<String, List<Mapping>> e : byProject.entrySet()) {
+			Integer last = lastOfProject.get(e.getKey());
+			for (Mapping mapping : e.getValue()) {
+				if (!lastOfMapping.containsKey(mapping)) {
+					if (last != null) {
+						addedAfter.computeIfAbsent(last, k -> new ArrayList<>()).add(mapping);
+					} else {
+						addedAtEnd.add(mapping);
+					}
+				}
+			}
+		}
+
+		List<Line> written = new ArrayList<>();
+		for (int i = 0; i < lines.size(); i++) {
+			Line line = lines.get(i);
+			Mapping mapping = line.mapping;
+			if (mapping == null) {
+				written.add(line);
+			} else if (!mapping.removed) {
+				if (mapping.value(line.kind) != null) {
+					written.add(line);
+				}
+				if (lastOfMapping.get(mapping) == i) {
+					// values set for kinds without a line so far
+					for (int kind = 0; kind < KINDS.length; kind++) {
+						if (!present.get(mapping)[kind] && mapping.value(kind) != null) {
+							written.add(new Line(mapping, kind, null));
+						}
+					}
+				}
+			}
+			for (Mapping added : addedAfter.getOrDefault(i, Collections.emptyList())) {
+				addLines(added, written);
+			}
+		}
+		for (Mapping added : addedAtEnd) {
+			addLines(added, written);
+		}
+		lines = written;
+
+		VsSolutionSection projectSection = section(PROJECT_SECTION, "postSolution",
+				solutionSection != null ? solution.globalSections.indexOf(solutionSection) + 1 : 0, !lines.isEmpty());
+		if (projectSection != null) {
+			projectSection.content.clear();
+			for (Line line : lines) {
+				projectSection.content.add(line.mapping == null ? line.raw
+						: line.mapping.guid + "." + line.mapping.solutionConfiguration + "." + KINDS[line.kind] + " = " + line.mapping.value(line.kind));
+			}
+		}
+	}
+
+	private static void addLines(Mapping mapping, List<Line> output) {
+		for (int kind = 0; kind < KINDS.length; kind++) {
+			if (mapping.value(kind) != null) {
+				output.add(new Line(mapping, kind, null));
+			}
+		}
+	}
+
+	/** @return the section, a new section at the index if it does not exist yet, or null if it is not needed */
+	private VsSolutionSection section(String label, String when, int index, boolean needed) {
+		Optional<VsSolutionSection> section = solution.globalSection(label, when);
+		if (section.isPresent() || !needed) {
+			return section.orElse(null);
+		}
+		VsSolutionSection created = new VsSolutionSection(0, "\t", "GlobalSection", label, when);
+		created.contentIndent = "\t\t";
+		solution.globalSections.add(index, created);
+		return created;
+	}
+}
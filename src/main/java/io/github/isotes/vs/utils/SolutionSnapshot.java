@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2020 Robert Sauter
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.isotes.vs.utils;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Immutable view of a {@link VsSolution} that can be shared between threads without locking
+ *
+ * <p>Created with {@link VsSolution#freeze()}. When a previous snapshot is passed to
+ * {@link VsSolution#freeze(SolutionSnapshot)}, projects and sections with unchanged values are taken over by identity
+ * from it. Use {@link #thaw()} to get a mutable copy for modifications.</p>
+ */
+public class SolutionSnapshot {
+	/** Immutable view of a {@link VsSolutionSection} */
+	public static class Section {
+		public final int firstLine;
+		public final String tagIndent;
+		public final String tag;
+		public final String label;
+		public final String when;
+		public final String contentIndent;
+		public final List<String> content;
+
+		private Section(VsSolutionSection section) {
+			this.firstLine = section.firstLine;
+			this.tagIndent = section.tagIndent;
+			this.tag = section.tag;
+			this.label = section.label;
+			this.when = section.when;
+			this.contentIndent = section.contentIndent;
+			this.content = Collections.unmodifiableList(new ArrayList<>(section.content));
+		}
+
+		private boolean sameAs(VsSolutionSection section) {
+			return firstLine == section.firstLine && tagIndent.equals(section.tagIndent) && tag.equals(section.tag)
+					&& label.equals(section.label) && when.equals(section.when)
+					&& Objects.equals(contentIndent, section.contentIndent) && content.equals(section.content);
+		}
+
+		private VsSolutionSection thaw() {
+			VsSolutionSection section = new VsSolutionSection(firstLine, tagIndent, tag, label, when);
+			section.contentIndent = contentIndent;
+			section.content.addAll(content);
+			return section;
+		}
+	}
+
+	/** Immutable view of a {@link VsSolutionProject} */
+	public static class Project {
+		public final int firstLine;
+		public final String typeGuid;
+		public final String name;
+		public final String fileName;
+		public final String guid;
+		public final List<Section> sections;
+		public final Path path;
+
+		private Project(VsSolutionProject project, List<Section> sections) {
+			this.firstLine = project.firstLine;
+			this.typeGuid = project.typeGuid;
+			this.name = project.name;
+			this.fileName = project.fileName;
+			this.guid = project.guid;
+			this.sections = sections;
+			this.path = project.path;
+		}
+
+		private boolean sameAs(VsSolutionProject project) {
+			if (firstLine != project.firstLine || !typeGuid.equals(project.typeGuid) || !name.equals(project.name)
+					|| !fileName.equals(project.fileName) || !guid.equals(project.guid) || !Objects.equals(path, project.path)
+					|| sections.size() != project.sections.size()) {
+				return false;
+			}
+			for (int i = 0; i < sections.size(); i++) {
+				if (!sections.get(i).sameAs(project.sections.get(i))) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		public ProjectType projectType() {
+			return ProjectType.byGuid(typeGuid);
+		}
+
+		/** @return the list of the GUIDs of dependency projects, see {@link VsSolutionProject#dependencies()} */
+		public List<String> dependencies() {
+			List<String> r = new ArrayList<>();
+			for (Section section : sections) {
+				if ("ProjectDependencies".equals(section.label)) {
+					for (String line : section.content) {
+						r.add(line.split(" = ", 2)[0]);
+					}
+				}
+			}
+			return r;
+		}
+
+		private VsSolutionProject thaw() {
+			// the path is taken over instead of being resolved again
+			VsSolutionProject project = new VsSolutionProject(firstLine, Paths.get(""), typeGuid, name, fileName, guid);
+			project.path = path;
+			for (Section section : sections) {
+				project.sections.add(section.thaw());
+			}
+			return project;
+		}
+	}
+
+	public final Path path;
+	public final String newline;
+	public final boolean hasBom;
+	public final List<String> headerLines;
+	public final List<Project> projects;
+	public final List<Section> globalSections;
+	private final Map<String, Project> byGuid;
+	private final Map<String, Project> byName;
+	private final Map<List<String>, Section> sectionsByKey;
+	// the file content the snapshot has been created from or null if unknown, see SnapshotStore
+	final SnapshotStore.Stamp source;
+
+	/**
+	 * @param solution the solution to copy
+	 * @param previous a previous snapshot whose unchanged projects and sections are reused or null
+	 */
+	SolutionSnapshot(VsSolution solution, SolutionSnapshot previous) {
+		this.byGuid = new HashMap<>();
+		this.byName = new HashMap<>();
+		this.sectionsByKey = new HashMap<>();
+		this.source = null;
+		this.path = solution.path;
+		this.newline = solution.newline;
+		this.hasBom = solution.hasBom;
+		this.headerLines = previous != null && previous.headerLines.equals(solution.headerLines) ? previous.headerLines
+				: Collections.unmodifiableList(new ArrayList<>(solution.headerLines));
+		Map<String, Project> previousProjects = previous != null ? previous.byGuid : Collections.emptyMap();
+		List<Section> previousSections = previous != null ? previous.globalSections : Collections.emptyList();
+
+		List<Project> projects = new ArrayList<>(solution.projects.size());
+		for (VsSolutionProject vsp : solution.projects) {
+			Project project = previousProjects.get(vsp.guid.toUpperCase());
+			if (project == null || !project.sameAs(vsp)) {
+				List<Section> sections = new ArrayList<>(vsp.sections.size());
+				for (VsSolutionSection section : vsp.sections) {
+					sections.add(new Section(section));
+				}
+				project = new Project(vsp, Collections.unmodifiableList(sections));
+			}
+			projects.add(project);
+			byGuid.putIfAbsent(project.guid.toUpperCase(), project);
+			byName.putIfAbsent(project.name, project);
+		}
+		this.projects = Collections.unmodifiableList(projects);
+
+		List<Section> sections = new ArrayList<>(solution.globalSections.size());
+		for (int i = 0; i < solution.globalSections.size(); i++) {
+			VsSolutionSection gs = solution.globalSections.get(i);
+			Section section = i < previousSections.size() && previousSections.get(i).sameAs(gs) ? previousSections.get(i) : new Section(gs);
+			sections.add(section);
+			sectionsByKey.putIfAbsent(Arrays.asList(section.label, section.when), section);
+		}
+		this.globalSections = Collections.unmodifiableList(sections);
+	}
+
+	/** Share the content of another snapshot and mark it as created from the file content with the stamp */
+	private SolutionSnapshot(SolutionSnapshot other, SnapshotStore.Stamp source) {
+		this.path = other.path;
+		this.newline = other.newline;
+		this.hasBom = other.hasBom;
+		this.headerLines = other.headerLines;
+		this.projects = other.projects;
+		this.globalSections = other.globalSections;
+		this.byGuid = other.byGuid;
+		this.byName = other.byName;
+		this.sectionsByKey = other.sectionsByKey;
+		this.source = source;
+	}
+
+	SolutionSnapshot withSource(SnapshotStore.Stamp source) {
+		return new SolutionSnapshot(this, source);
+	}
+
+	/**
+	 * @param guid the GUID of the project, matched case-insensitively
+	 * @return the first project with the GUID or null if there is none
+	 */
+	public Project byGuid(String guid) {
+		return byGuid.get(guid.toUpperCase());
+	}
+
+	/** @return the first project with the name or null if there is none */
+	public Project byName(String name) {
+		return byName.get(name);
+	}
+
+	public Optional<Section> globalSection(String label, String when) {
+		return Optional.ofNullable(sectionsByKey.get(Arrays.asList(label, when)));
+	}
+
+	/** @return a new mutable solution with the content of this snapshot */
+	public VsSolution thaw() {
+		VsSolution solution = new VsSolution();
+		solution.path = path;
+		solution.newline = newline;
+		solution.hasBom = hasBom;
+		solution.headerLines.addAll(headerLines);
+		for (Project project : projects) {
+			solution.projects.add(project.thaw());
+		}
+		for (Section section : globalSections) {
+			solution.globalSections.add(section.thaw());
+		}
+		return solution;
+	}
+}
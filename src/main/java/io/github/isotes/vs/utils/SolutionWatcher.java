@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2020 Robert Sauter
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.isotes.vs.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Keeps a solution and its projects up to date with the files on disk
+ *
+ * <p>The directories of the solution and of all projects are watched with a {@link WatchService}. Change events are
+ * collected on a background thread until no further event arrives for the debounce interval. Then, only the changed
+ * files are loaded again: the solution file if it has changed and the projects whose files have changed or that have
+ * been added to the solution. All other {@link ProjectWrapper} objects are taken over from the previous snapshot.</p>
+ *
+ * <p>Readers access the current state via {@link #snapshot()} without locking. A new {@link Snapshot} is published
+ * atomically after each reload. As snapshots share unchanged objects, they must not be modified. If the solution
+ * file cannot be parsed, e.g., because it is being written, the changed projects are reloaded with the previous
+ * solution and the solution file is parsed again with the next change.</p>
+ *
+ * <p>The {@link VsSolution} and {@link ProjectWrapper} objects of a snapshot are the mutable model objects, whose
+ * lookups build indices lazily. They must not be read by multiple threads concurrently; to share the state between
+ * threads, create immutable views with {@link VsSolution#freeze()} and {@link ProjectWrapper#freeze()}, e.g., in the
+ * listener.</p>
+ *
+ * <p>Exceptions of the listener and of reloading are passed to the uncaught exception handler of the background
+ * thread and watching continues.</p>
+ */
+public class SolutionWatcher implements Closeable {
+	public static final long DEFAULT_DEBOUNCE_MILLIS = 200;
+
+	/** A consistent state of the solution and its projects; must not be modified or read concurrently */
+	public static class Snapshot {
+		/** Incremented with each reload starting at 1 */
+		public final long version;
+		public final VsSolution solution;
+		/** The successfully parsed projects by GUID in the order of the solution */
+		public final Map<String, ProjectWrapper> projects;
+		/** The exceptions of projects that could not be loaded by GUID in the order of the solution */
+		public final Map<String, RuntimeException> failures;
+
+		public Snapshot(long version, VsSolution solution, Map<String, ProjectWrapper> projects, Map<String, RuntimeException> failures) {
+			this.version = version;
+			this.solution = solution;
+			this.projects = Collections.unmodifiableMap(projects);
+			this.failures = Collections.unmodifiableMap(failures);
+		}
+
+		/** @return the parsed project file of the solution project or null if it has not been loaded */
+		public ProjectWrapper get(VsSolutionProject project) {
+			return projects.get(project.guid);
+		}
+	}
+
+	public final Path path;
+	private final long debounceMillis;
+	private final Consumer<Snapshot> listener;
+	private final WatchService watchService;
+	private final Map<Path, WatchKey> watchKeys = new HashMap<>();
+	private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+	private final Thread thread;
+	// whether the solution file has changed but could not be parsed; only used by the background thread
+	private boolean solutionPending;
+
+	/**
+	 * Loads the solution and its projects and starts watching them
+	 *
+	 * @param path the solution file
+	 * @param debounceMillis the time without further change events before files are reloaded
+	 * @param listener called on the background thread with each new snapshot or null
+	 */
+	public SolutionWatcher(Path path, long debounceMillis, Consumer<Snapshot> listener) {
+		this.path = path.toAbsolutePath().normalize();
+		this.debounceMillis = debounceMillis;
+		this.listener = listener;
+		try {
+			this.watchService = this.path.getFileSystem().newWatchService();
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Watching " + path + " failed: " + e.getMessage(), e);
+		}
+		try {
+			LoadedSolution loaded = new LoadedSolution(new VsSolution(this.path));
+			Snapshot initial = new Snapshot(1, loaded.solution, new LinkedHashMap<>(loaded.projects), new LinkedHashMap<>(loaded.failures));
+			watch(initial.solution);
+			snapshot.set(initial);
+		} catch (RuntimeException e) {
+			closeWatchService();
+			throw e;
+		}
+		thread = new Thread(this::run, "SolutionWatcher " + this.path.getFileName());
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public SolutionWatcher(Path path) {
+		this(path, DEFAULT_DEBOUNCE_MILLIS, null);
+	}
+
+	/** @return the current state, which is replaced but never modified by this watcher */
+	public Snapshot snapshot() {
+		return snapshot.get();
+	}
+
+	/** Stops watching and waits for the background thread to finish */
+	@Override
+	public void close() {
+		closeWatchService();
+		if (Thread.currentThread() != thread) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private void closeWatchService() {
+		try {
+			watchService.close();
+		} catch (IOException e) {
+			// nothing left to release
+		}
+	}
+
+	private void run() {
+		while (true) {
+			try {
+				Set<Path> changed = new HashSet<>();
+				// wait for the first event, then until no event arrives for the debounce interval
+				boolean overflow = collect(watchService.take(), changed);
+				for (WatchKey key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS); key != null;
+						key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS)) {
+					overflow |= collect(key, changed);
+				}
+				reload(overflow ? null : changed);
+			} catch (ClosedWatchServiceException | InterruptedException e) {
+				// closed
+				return;
+			} catch (RuntimeException e) {
+				// e.g., thrown by the listener; report it and keep watching
+				thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+			}
+		}
+	}
+
+	/** @return true if events have been lost */
+	private static boolean collect(WatchKey key, Set<Path> changed) {
+		boolean overflow = false;
+		Path dir = (Path) key.watchable();
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+				overflow = true;
+			} else {
+				changed.add(dir.resolve((Path) event.context()));
+			}
+		}
+		key.reset();
+		return overflow;
+	}
+
+	/** @param changed the changed files or null to reload everything */
+	private void reload(Set<Path> changed) {
+		Snapshot previous = snapshot.get();
+		VsSolution solution = previous.solution;
+		if (changed == null || changed.contains(path) || solutionPending) {
+			try {
+				solution = new VsSolution(path);
+				solutionPending = false;
+			} catch (RuntimeException e) {
+				// e.g., while the file is being written; the projects are reloaded with the previous solution
+				solutionPending = true;
+			}
+		}
+		Map<Path, ProjectWrapper> previousByPath = new HashMap<>();
+		for (ProjectWrapper pw : previous.projects.values()) {
+			previousByPath.put(normalize(pw.path), pw);
+		}
+		boolean modified = solution != previous.solution;
+		Map<String, ProjectWrapper> projects = new LinkedHashMap<>();
+		Map<String, RuntimeException> failures = new LinkedHashMap<>();
+		for (VsSolutionProject vsp : solution.projects) {
+			if (vsp.projectType() == ProjectType.SOLUTION_FOLDER) {
+				continue;
+			}
+			Path projectPath = normalize(vsp.path);
+			ProjectWrapper pw = previousByPath.get(projectPath);
+			RuntimeException failure = pw == null ? previous.failures.get(vsp.guid) : null;
+			if ((pw != null || failure != null) && changed != null && !changed.contains(projectPath)) {
+				if (pw != null) {
+					projects.put(vsp.guid, pw);
+				} else {
+					failures.put(vsp.guid, failure);
+				}
+				continue;
+			}
+			modified = true;
+			try {
+				projects.put(vsp.guid, new ProjectWrapper(vsp.path));
+			} catch (RuntimeException e) {
+				failures.put(vsp.guid, e);
+			}
+		}
+		if (!modified) {
+			return;
+		}
+		Snapshot next = new Snapshot(previous.version + 1, solution, projects, failures);
+		snapshot.set(next);
+		watch(solution);
+		if (listener != null) {
+			listener.accept(next);
+		}
+	}
+
+	/** Watch the directories of the solution and its projects and stop watching all others */
+	private void watch(VsSolution solution) {
+		Set<Path> dirs = new HashSet<>();
+		dirs.add(path.getParent());
+		for (VsSolutionProject vsp : solution.projects) {
+			if (vsp.projectType() != ProjectType.SOLUTION_FOLDER) {
+				dirs.add(normalize(vsp.path).getParent());
+			}
+		}
+		watchKeys.entrySet().removeIf(e -> {
+			if (!dirs.contains(e.getKey())) {
+				e.getValue().cancel();
+				return true;
+			}
+			return false;
+		});
+		for (Path dir : dirs) {
+			if (!watchKeys.containsKey(dir)) {
+				try {
+					watchKeys.put(dir, dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+							StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE));
+				} catch (IOException e) {
+					// e.g., the directory of a missing project; its loading failure is recorded instead
+				}
+			}
+		}
+	}
+
+	private static Path normalize(Path path) {
+		return path.toAbsolutePath().normalize();
+	}
+}
@@ -22,21 +22,33 @@ public class TextFile {
 	public final boolean hasBom;
 
 	public TextFile(Path path, Charset charset) {
-		try {
-			this.path = path;
-			this.charset = charset;
-			byte[] bytes = Files.readAllBytes(path);
-			this.hasBom = bytes[0] == (byte) 0xef && bytes[1] == (byte) 0xbb && bytes[2] == (byte) 0xbf;
-			int offset = hasBom ? 3 : 0;
-			this.content = new String(bytes, offset, bytes.length - offset, charset);
-			int firstLinefeed = content.indexOf(0x0a);
-			this.newline = (firstLinefeed > 0 && content.charAt(firstLinefeed - 1) == '\r') ? "\r\n" : "\n";
-		} catch (IOException e) {
-			throw new IllegalArgumentException("Reading " + path + " failed: " + e.getMessage(), e);
-		}
+		this(path, read(path), charset);
+	}
+
+	/**
+	 * @param path the path the content has been read from
+	 * @param bytes the content of the file
+	 * @param charset the charset used to decode the content
+	 */
+	public TextFile(Path path, byte[] bytes, Charset charset) {
+		this.path = path;
+		this.charset = charset;
+		this.hasBom = bytes.length >= 3 && bytes[0] == (byte) 0xef && bytes[1] == (byte) 0xbb && bytes[2] == (byte) 0xbf;
+		int offset = hasBom ? 3 : 0;
+		this.content = new String(bytes, offset, bytes.length - offset, charset);
+		int firstLinefeed = content.indexOf(0x0a);
+		this.newline = (firstLinefeed > 0 && content.charAt(firstLinefeed - 1) == '\r') ? "\r\n" : "\n";
 	}
 
 	public TextFile(Path path) {
 		this(path, StandardCharsets.UTF_8);
 	}
+
+	private static byte[] read(Path path) {
+		try {
+			return Files.readAllBytes(path);
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Reading " + path + " failed: " + e.getMessage(), e);
+		}
+	}
 }
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2020 Robert Sauter
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.isotes.vs.utils;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.RandomAccess;
+
+/** Internal {@link java.util.List} that counts modifications to allow lazy invalidation of derived indices */
+class TrackedList<E> extends AbstractList<E> implements RandomAccess {
+	private final ArrayList<E> list = new ArrayList<>();
+	private int version;
+
+	/** @return a value that changes whenever an element is added, removed or replaced */
+	int version() {
+		return version;
+	}
+
+	@Override
+	public E get(int index) {
+		return list.get(index);
+	}
+
+	@Override
+	public int size() {
+		return list.size();
+	}
+
+	@Override
+	public E set(int index, E element) {
+		E old = list.set(index, element);
+		version++;
+		return old;
+	}
+
+	@Override
+	public void add(int index, E element) {
+		list.add(index, element);
+		modCount++;
+		version++;
+	}
+
+	@Override
+	public E remove(int index) {
+		E old = list.remove(index);
+		modCount++;
+		version++;
+		return old;
+	}
+
+	@Override
+	public void clear() {
+		list.clear();
+		modCount++;
+		version++;
+	}
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2020 Robert Sauter
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.isotes.vs.utils;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Internal writer that applies the formatting of Visual Studio to the pretty printed output of XMLBeans
+ *
+ * <p>The output is processed line by line in a single pass; line breaks (LF or CRLF) are replaced by the requested
+ * newline. The following adjustments are made:</p>
+ * <ul>
+ *     <li>a space is added before the slash of self-closing tags: {@code <Tag />}</li>
+ *     <li>empty import groups and some other empty tags are written with separate start and end lines</li>
+ * </ul>
+ *
+ * <p>Closing this writer writes a pending incomplete line but does not close the target.</p>
+ */
+class VsFormattingWriter extends Writer {
+	private static final String IMPORT_GROUP_START = "<ImportGroup Label=\"";
+	private static final String IMPORT_GROUP_END = "</ImportGroup>";
+	private static final String[] MULTILINE_EMPTY_TAGS = {"SccProjectName", "SccAuxPath", "SccLocalPath", "SccProvider",
+			"ImageHasSafeExceptionHandlers", "IgnoreAllDefaultLibraries", "LinkLibraryDependencies", "Command", "Message"};
+
+	private final Writer out;
+	private final String newline;
+	private final StringBuilder line = new StringBuilder();
+	// consecutive lines consisting only of whitespace directly preceding the current line
+	private final List<String> blankLines = new ArrayList<>();
+
+	VsFormattingWriter(Writer out, String newline) {
+		this.out = out;
+		this.newline = newline;
+	}
+
+	@Override
+	public void write(char[] cbuf, int off, int len) throws IOException {
+		int end = off + len;
+		int start = off;
+		for (int i = off; i < end; i++) {
+			if (cbuf[i] == '\n') {
+				line.append(cbuf, start, i - start);
+				writeLine(true);
+				start = i + 1;
+			}
+		}
+		line.append(cbuf, start, end - start);
+	}
+
+	@Override
+	public void write(String str, int off, int len) throws IOException {
+		int end = off + len;
+		int start = off;
+		for (int i = str.indexOf('\n', off); i >= 0 && i < end; i = str.indexOf('\n', i + 1)) {
+			line.append(str, start, i);
+			writeLine(true);
+			start = i + 1;
+		}
+		line.append(str, start, end);
+	}
+
+	@Override
+	public void write(int c) throws IOException {
+		if (c == '\n') {
+			writeLine(true);
+		} else {
+			line.append((char) c);
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (line.length() > 0) {
+			writeLine(false);
+		}
+		out.flush();
+	}
+
+	private void writeLine(boolean terminated) throws IOException {
+		int end = line.length();
+		if (terminated && end > 0 && line.charAt(end - 1) == '\r') {
+			end -= 1;
+		}
+		int indent = 0;
+		while (indent < end && isSpace(line.charAt(indent))) {
+			indent++;
+		}
+		if (indent == end) {
+			String blank = line.substring(0, end);
+			out.write(blank);
+			blankLines.add(blank);
+		} else {
+			if (!fixSelfClosingTag(indent, end) && !fixImportGroup(indent, end) && !fixMultilineEmptyTag(indent, end)) {
+				out.append(line, 0, end);
+			}
+			blankLines.clear();
+		}
+		if (terminated) {
+			out.write(newline);
+		}
+		line.setLength(0);
+	}
+
+	// <Tag Attribute="value"/> -> <Tag Attribute="value" />
+	private boolean fixSelfClosingTag(int indent, int end) throws IOException {
+		if (line.charAt(indent) != '<' || end - indent < 4 || line.charAt(end - 2) != '/' || line.charAt(end - 1) != '>'
+				|| isSpace(line.charAt(end - 3))) {
+			return false;
+		}
+		out.append(line, 0, end - 2);
+		out.write(" />");
+		return true;
+	}
+
+	// <ImportGroup Label="Shared"></ImportGroup> -> start and end tag on separate lines
+	private boolean fixImportGroup(int indent, int end) throws IOException {
+		int split = end - IMPORT_GROUP_END.length();
+		if (split - indent < IMPORT_GROUP_START.length() + 2 || !regionMatches(indent, IMPORT_GROUP_START)
+				|| !regionMatches(split - 2, "\">" + IMPORT_GROUP_END)) {
+			return false;
+		}
+		writeSplit(indent, split, IMPORT_GROUP_END);
+		return true;
+	}
+
+	// <Command></Command> -> start and end tag on separate lines
+	private boolean fixMultilineEmptyTag(int indent, int end) throws IOException {
+		if (line.charAt(indent) != '<' || line.charAt(end - 1) != '>') {
+			return false;
+		}
+		for (String tag : MULTILINE_EMPTY_TAGS) {
+			int close = indent + tag.length() + 2;
+			if (close + 2 < end && regionMatches(indent + 1, tag) && regionMatches(close - 1, "></")
+					&& isWord(close + 2, end - 1)) {
+				writeSplit(indent, close, "</" + tag + ">");
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// the start tag followed by the end tag on a new line with the same indent (including preceding blank lines)
+	private void writeSplit(int indent, int startTagEnd, String endTag) throws IOException {
+		out.append(line, 0, startTagEnd);
+		out.write(newline);
+		for (String blank : blankLines) {
+			out.write(blank);
+			out.write(newline);
+		}
+		out.append(line, 0, indent);
+		out.write(endTag);
+	}
+
+	private boolean regionMatches(int offset, String s) {
+		if (offset + s.length() > line.length()) {
+			return false;
+		}
+		for (int i = 0; i < s.length(); i++) {
+			if (line.charAt(offset + i) != s.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// \w+
+	private boolean isWord(int start, int end) {
+		if (start >= end) {
+			return false;
+		}
+		for (int i = start; i < end; i++) {
+			char c = line.charAt(i);
+			if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_')) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// \s
+	private static boolean isSpace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == 0x0b || c == '\f' || c == '\r';
+	}
+}
@@ -6,46 +6,178 @@
 package io.github.isotes.vs.utils;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 
 /**
  * Describes a solution file as specified
  * <a href="https://docs.microsoft.com/en-us/visualstudio/extensibility/internals/solution-dot-sln-file?view=vs-2019">here</a>
+ *
+ * <p>The lookups {@link #byGuid(String)}, {@link #byName(String)}, and {@link #globalSection(String, String)} use
+ * indices that are rebuilt lazily whenever {@link #projects} or {@link #globalSections} are modified. If the GUID or
+ * name of a project or the label of a section is changed in place, call {@link #reindex()}.</p>
  */
 public class VsSolution {
 	public Path path;
 	public String newline;
 	public boolean hasBom;
 	public final List<String> headerLines = new ArrayList<>();
-	public final List<VsSolutionProject> projects = new ArrayList<>();
-	public final List<VsSolutionSection> globalSections = new ArrayList<>();
+	private final TrackedList<VsSolutionProject> trackedProjects = new TrackedList<>();
+	public final List<VsSolutionProject> projects = trackedProjects;
+	private final TrackedList<VsSolutionSection> trackedGlobalSections = new TrackedList<>();
+	public final List<VsSolutionSection> globalSections = trackedGlobalSections;
+
+	private ProjectIndex projectIndex;
+	private SectionIndex sectionIndex;
+
+	/** An empty solution, e.g., to be filled by {@link SolutionSnapshot#thaw()} */
+	VsSolution() {
+	}
 
 	public VsSolution(Path path) {
 		VsSolutionParser.parse(this, path);
 	}
 
+	/**
+	 * Parse a solution from a UTF-8 encoded stream, e.g., from an archive
+	 *
+	 * @param path the path of the solution used to resolve the paths of the projects
+	 * @param in the stream, which is not closed
+	 */
+	public VsSolution(Path path, InputStream in) {
+		VsSolutionParser.parse(this, path, in);
+	}
+
+	/**
+	 * Parse a new version of a solution reusing the unchanged projects and global sections of the previous version
+	 *
+	 * <p>Unchanged {@link VsSolutionProject} and {@link VsSolutionSection} objects are taken over by identity (with
+	 * updated line numbers) so that data associated with them stays valid. The previous version should not be used
+	 * afterwards. See {@link VsSolutionParser#update(VsSolution, VsSolution, Path, Reader)}.</p>
+	 *
+	 * @param previous the previous version of the solution
+	 * @param path the path of the new version
+	 */
+	public VsSolution(VsSolution previous, Path path) {
+		try (Reader reader = new InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_8)) {
+			VsSolutionParser.update(this, previous, path, reader);
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Reading " + path + " failed: " + e.getMessage(), e);
+		}
+	}
+
+	/** Parse a solution read via NIO, see {@link MappedTextFile} */
+	public VsSolution(MappedTextFile textFile) {
+		VsSolutionParser.parse(this, textFile);
+	}
+
+	/**
+	 * The lookups use indices that are rebuilt after projects or sections have been added or removed. A stale hit after
+	 * changing a GUID, name, or label in place is detected, but a miss is answered from the index: call
+	 * {@link #reindex()} after such changes.
+	 *
+	 * @param guid the GUID of the project, matched case-insensitively
+	 * @return the first project with the GUID or null if there is none, also for null
+	 */
 	public VsSolutionProject byGuid(String guid) {
-		for (VsSolutionProject project : projects) {
-			if (project.guid.equals(guid)) {
-				return project;
-			}
+		if (guid == null) {
+			return null;
+		}
+		VsSolutionProject project = projectIndex().byGuid.get(guid.toUpperCase());
+		if (project != null && !guid.equalsIgnoreCase(project.guid)) {
+			reindex();
+			project = projectIndex().byGuid.get(guid.toUpperCase());
+		}
+		return project;
+	}
+
+	/** @return the first project with the name or null if there is none */
+	public VsSolutionProject byName(String name) {
+		VsSolutionProject project = projectIndex().byName.get(name);
+		if (project != null && !Objects.equals(name, project.name)) {
+			reindex();
+			project = projectIndex().byName.get(name);
 		}
-		return null;
+		return project;
 	}
 
 	public Optional<VsSolutionSection> globalSection(String label, String when) {
-		for (VsSolutionSection gs : globalSections) {
-			if (Objects.equals(label, gs.label) && Objects.equals(when, gs.when)) {
-				return Optional.of(gs);
+		VsSolutionSection gs = sectionIndex().byKey.get(Arrays.asList(label, when));
+		if (gs != null && !(Objects.equals(label, gs.label) && Objects.equals(when, gs.when))) {
+			reindex();
+			gs = sectionIndex().byKey.get(Arrays.asList(label, when));
+		}
+		return Optional.ofNullable(gs);
+	}
+
+	/** Discard the lookup indices, e.g., after changing the GUID or name of a project in place */
+	public void reindex() {
+		projectIndex = null;
+		sectionIndex = null;
+	}
+
+	private ProjectIndex projectIndex() {
+		if (projectIndex == null || projectIndex.version != trackedProjects.version()) {
+			projectIndex = new ProjectIndex(trackedProjects);
+		}
+		return projectIndex;
+	}
+
+	private SectionIndex sectionIndex() {
+		if (sectionIndex == null || sectionIndex.version != trackedGlobalSections.version()) {
+			sectionIndex = new SectionIndex(trackedGlobalSections);
+		}
+		return sectionIndex;
+	}
+
+	private static class ProjectIndex {
+		final int version;
+		final Map<String, VsSolutionProject> byGuid = new HashMap<>();
+		final Map<String, VsSolutionProject> byName = new HashMap<>();
+
+		ProjectIndex(TrackedList<VsSolutionProject> projects) {
+			this.version = projects.version();
+			for (VsSolutionProject project : projects) {
+				byGuid.putIfAbsent(project.guid.toUpperCase(), project);
+				byName.putIfAbsent(project.name, project);
+			}
+		}
+	}
+
+	private static class SectionIndex {
+		final int version;
+		final Map<List<String>, VsSolutionSection> byKey = new HashMap<>();
+
+		SectionIndex(TrackedList<VsSolutionSection> sections) {
+			this.version = sections.version();
+			for (VsSolutionSection gs : sections) {
+				byKey.putIfAbsent(Arrays.asList(gs.label, gs.when), gs);
 			}
 		}
-		return Optional.empty();
+	}
+
+	/** @return an immutable copy of the current state that can be shared between threads */
+	public SolutionSnapshot freeze() {
+		return new SolutionSnapshot(this, null);
+	}
+
+	/**
+	 * @param previous a previous snapshot of the solution whose unchanged projects and sections are reused
+	 * @return an immutable copy of the current state that can be shared between threads
+	 */
+	public SolutionSnapshot freeze(SolutionSnapshot previous) {
+		return new SolutionSnapshot(this, previous);
 	}
 
 	public void stringify(List<String> output) {
@@ -71,9 +203,23 @@ public class VsSolution {
 		return content;
 	}
 
+	/** Save the solution, writing it to a temporary file that replaces the file atomically */
 	public void save(Path path) {
 		try {
-			Files.write(path, stringify().getBytes(StandardCharsets.UTF_8));
+			FileUpdate.writeAtomically(path, stringify().getBytes(StandardCharsets.UTF_8));
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Saving solution to " + path + " failed: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Save the solution only if the content of the file would change, replacing the file atomically
+	 *
+	 * @return true if the file has been written
+	 */
+	public boolean saveIfChanged(Path path) {
+		try {
+			return FileUpdate.writeIfChanged(path, stringify().getBytes(StandardCharsets.UTF_8));
 		} catch (IOException e) {
 			throw new IllegalArgumentException("Saving solution to " + path + " failed: " + e.getMessage(), e);
 		}
@@ -5,12 +5,30 @@
 
 package io.github.isotes.vs.utils;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-/** Internal helper class to parse solution files for {@link io.github.isotes.vs.utils.VsSolution} */
+/**
+ * Internal helper class to parse solution files for {@link io.github.isotes.vs.utils.VsSolution}
+ *
+ * <p>The input is read in a single pass: lines are tokenized lazily from a {@link Reader} and the indent of each line
+ * is determined only once.</p>
+ */
 public class VsSolutionParser {
 	// Project("{F184B08F-C81C-45F6-A57F-5ABD9991F28F}") = "Project1", "Project1.vbproj", "{8CDD8387-B905-44A8-B5D5-07BB50E05BEA}"
 	private final static Pattern PROJECT_RE = Pattern.compile("^Project\\(\"([^\"]+)\"\\) = \"([^\"]+)\", \"([^\"]+)\", \"([^\"]+)\"$");
@@ -19,12 +37,48 @@ public class VsSolutionParser {
 
 	private final VsSolution solution;
 	private final String fileName;
-	private final String[] lines;
+	private final LineSource lines;
+	private Line current;
 	private int index;
 
 	public static void parse(VsSolution solution, Path fileName) {
-		TextFile textFile = new TextFile(fileName);
-		parse(solution, fileName, textFile.content, textFile.newline, textFile.hasBom);
+		try (InputStream in = Files.newInputStream(fileName)) {
+			parse(solution, fileName, in);
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Reading " + fileName + " failed: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Parse a UTF-8 encoded solution from a stream, e.g., from an archive, detecting newline and BOM
+	 *
+	 * @param solution the solution to fill
+	 * @param path the path of the solution used to resolve the paths of the projects
+	 * @param in the stream, which is not closed
+	 */
+	public static void parse(VsSolution solution, Path path, InputStream in) {
+		parse(solution, path, new InputStreamReader(in, StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Parse a solution from a reader detecting newline and BOM
+	 *
+	 * @param solution the solution to fill
+	 * @param path the path of the solution used to resolve the paths of the projects
+	 * @param reader the reader, which is not closed
+	 */
+	public static void parse(VsSolution solution, Path path, Reader reader) {
+		LineReader lineReader = new LineReader(reader);
+		parse(solution, path, lineReader);
+		solution.newline = lineReader.newline();
+		solution.hasBom = lineReader.hasBom;
+	}
+
+	public static void parse(VsSolution solution, MappedTextFile textFile) {
+		LineReader lineReader = new LineReader(textFile.reader());
+		parse(solution, textFile.path, lineReader);
+		solution.newline = textFile.newline;
+		solution.hasBom = textFile.hasBom || lineReader.hasBom;
 	}
 
 	public static void parse(VsSolution solution, String content) {
@@ -32,20 +86,170 @@ public class VsSolutionParser {
 	}
 
 	public static void parse(VsSolution solution, Path path, String content, String newline, boolean hasBom) {
-		solution.path = path;
+		LineReader lineReader = new LineReader(new StringReader(content));
+		parse(solution, path, lineReader);
 		solution.newline = newline;
-		solution.hasBom = hasBom;
-		new VsSolutionParser(solution, content.split("\r?\n"));
+		solution.hasBom = hasBom || lineReader.hasBom;
+	}
+
+	/**
+	 * Parse a new version of a solution reusing the projects and global sections of the previous version whose text
+	 * has not changed
+	 *
+	 * <p>The lines of the new version are split into the header, the project blocks, and the global sections. Only
+	 * blocks that differ from all (stringified) blocks of the previous version are parsed; the others are taken over
+	 * by identity with updated line numbers. Therefore, the previous version should not be used anymore.</p>
+	 *
+	 * @param solution the solution to fill
+	 * @param previous the previous version of the solution
+	 * @param path the path of the solution used to resolve the paths of the projects
+	 * @param reader the reader, which is not closed
+	 */
+	public static void update(VsSolution solution, VsSolution previous, Path path, Reader reader) {
+		LineReader lineReader = new LineReader(reader);
+		List<String> lines = new ArrayList<>();
+		try {
+			for (String line = lineReader.readLine(); line != null; line = lineReader.readLine()) {
+				lines.add(line);
+			}
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Reading " + path + " failed: " + e.getMessage(), e);
+		}
+		solution.path = path;
+		if (!Objects.equals(path.getParent(), previous.path.getParent()) || !update(solution, previous, lines)) {
+			// the paths of the projects change or the structure is invalid, which the parser reports
+			parse(solution, path, new ListLineSource(lines, 0));
+		}
+		solution.newline = lineReader.newline();
+		solution.hasBom = lineReader.hasBom;
+	}
+
+	private static boolean update(VsSolution solution, VsSolution previous, List<String> lines) {
+		List<int[]> projectBlocks = new ArrayList<>();
+		List<int[]> sectionBlocks = new ArrayList<>();
+		int headerEnd = splitBlocks(lines, projectBlocks, sectionBlocks);
+		if (headerEnd < 0) {
+			return false;
+		}
+		Map<List<String>, ArrayDeque<VsSolutionProject>> projects = new HashMap<>();
+		for (VsSolutionProject project : previous.projects) {
+			List<String> text = new ArrayList<>();
+			project.stringify(text);
+			projects.computeIfAbsent(text, k -> new ArrayDeque<>()).add(project);
+		}
+		Map<List<String>, ArrayDeque<VsSolutionSection>> sections = new HashMap<>();
+		for (VsSolutionSection section : previous.globalSections) {
+			List<String> text = new ArrayList<>();
+			section.stringify(text);
+			sections.computeIfAbsent(text, k -> new ArrayDeque<>()).add(section);
+		}
+
+		solution.headerLines.addAll(lines.subList(0, headerEnd));
+		for (int[] block : projectBlocks) {
+			ArrayDeque<VsSolutionProject> unchanged = projects.get(lines.subList(block[0], block[1]));
+			VsSolutionProject project = unchanged != null ? unchanged.poll() : null;
+			if (project != null) {
+				project.firstLine = block[0] + 1;
+				int line = block[0] + 1;
+				for (VsSolutionSection section : project.sections) {
+					section.firstLine = line + 1;
+					line += section.content.size() + 2;
+				}
+			} else {
+				project = new VsSolutionParser(solution, new ListLineSource(lines, block[0]), block[0]).parseProject();
+			}
+			solution.projects.add(project);
+		}
+		for (int[] block : sectionBlocks) {
+			ArrayDeque<VsSolutionSection> unchanged = sections.get(lines.subList(block[0], block[1]));
+			VsSolutionSection section = unchanged != null ? unchanged.poll() : null;
+			if (section != null) {
+				section.firstLine = block[0] + 1;
+			} else {
+				section = new VsSolutionParser(solution, new ListLineSource(lines, block[0]), block[0]).parseSection();
+			}
+			solution.globalSections.add(section);
+		}
+		return true;
+	}
+
+	/**
+	 * Determine the ranges of the project blocks and global sections following the structure of the parser
+	 *
+	 * @return the end of the header or -1 if the structure is invalid
+	 */
+	private static int splitBlocks(List<String> lines, List<int[]> projectBlocks, List<int[]> sectionBlocks) {
+		int n = lines.size();
+		int i = 0;
+		while (i < n && !startsWith(lines.get(i), "Project(")) {
+			i++;
+		}
+		int headerEnd = i;
+		while (i < n && startsWith(lines.get(i), "Project(")) {
+			int start = i++;
+			while (i < n && !startsWith(lines.get(i), "EndProject")) {
+				i = skipSection(lines, i);
+			}
+			if (i >= n) {
+				return -1;
+			}
+			projectBlocks.add(new int[]{start, ++i});
+		}
+		if (i >= n || !startsWith(lines.get(i), "Global")) {
+			return -1;
+		}
+		i++;
+		while (i < n && !startsWith(lines.get(i), "EndGlobal")) {
+			int start = i;
+			i = skipSection(lines, i);
+			sectionBlocks.add(new int[]{start, i});
+		}
+		return i < n ? headerEnd : -1;
+	}
+
+	/** @return the index after the end of the section starting at i or the number of lines if there is none */
+	private static int skipSection(List<String> lines, int i) {
+		String line = lines.get(i);
+		int indent = indent(line);
+		int parenthesis = line.indexOf('(', indent);
+		if (parenthesis < 0) {
+			return lines.size();
+		}
+		String endTag = "End" + line.substring(indent, parenthesis);
+		for (i++; i < lines.size(); i++) {
+			if (startsWith(lines.get(i), endTag)) {
+				return i + 1;
+			}
+		}
+		return lines.size();
+	}
+
+	private static boolean startsWith(String line, String prefix) {
+		return line.startsWith(prefix, indent(line));
+	}
+
+	private static int indent(String line) {
+		int i = 0;
+		while (i < line.length() && Character.isWhitespace(line.charAt(i))) {
+			i++;
+		}
+		return i;
+	}
+
+	private static void parse(VsSolution solution, Path path, LineSource lines) {
+		solution.path = path;
+		VsSolutionParser parser = new VsSolutionParser(solution, lines, 0);
+		parser.parseHeader();
+		parser.parseProjects();
+		parser.parseGlobal();
 	}
 
 
-	private VsSolutionParser(VsSolution solution, String[] lines) {
+	private VsSolutionParser(VsSolution solution, LineSource lines, int index) {
 		this.solution = solution;
 		this.fileName = solution.path.toString();
 		this.lines = lines;
-		parseHeader();
-		parseProjects();
-		parseGlobal();
+		this.index = index;
 	}
 
 	private void parseHeader() {
@@ -90,7 +294,8 @@ public class VsSolutionParser {
 			throw ex("Expected Section");
 		}
 		VsSolutionSection vss = new VsSolutionSection(prevLineNumber(), m.group(1), m.group(2), m.group(3), m.group(4));
-		while (!skipIfStartsWith("End" + vss.tag)) {
+		String endTag = "End" + vss.tag;
+		while (!skipIfStartsWith(endTag)) {
 			if (vss.contentIndent == null) {
 				vss.contentIndent = indent();
 			}
@@ -104,42 +309,52 @@ public class VsSolutionParser {
 
 	// "lexer"
 
+	private Line peek() {
+		if (current == null) {
+			try {
+				String text = lines.readLine();
+				if (text == null) {
+					throw new IllegalArgumentException(fileName + ":" + (index + 1) + ": Unexpected end of file");
+				}
+				current = new Line(text);
+			} catch (IOException e) {
+				throw new IllegalArgumentException("Reading " + fileName + " failed: " + e.getMessage(), e);
+			}
+		}
+		return current;
+	}
+
 	private void skip() {
+		peek();
+		current = null;
 		index += 1;
 	}
 
 	private String consume() {
-		return lines[index++];
+		String s = peek().text;
+		skip();
+		return s;
 	}
 
 	private String indent() {
-		StringBuilder in = new StringBuilder();
-		for (int i = 0; i < lines[index].length(); i++) {
-			char c = lines[index].charAt(i);
-			if (!Character.isWhitespace(c)) {
-				break;
-			}
-			in.append(c);
-		}
-		return in.toString();
-	}
-
-	private String content() {
-		return lines[index].substring(indent().length());
+		Line line = peek();
+		return line.text.substring(0, line.indent);
 	}
 
 	private String consumeContent() {
-		String s = content();
-		index += 1;
+		Line line = peek();
+		String s = line.text.substring(line.indent);
+		skip();
 		return s;
 	}
 
 	private boolean startsWith(String prefix) {
-		return content().startsWith(prefix);
+		Line line = peek();
+		return line.text.startsWith(prefix, line.indent);
 	}
 
 	private boolean skipIfStartsWith(String prefix) {
-		if (content().startsWith(prefix)) {
+		if (startsWith(prefix)) {
 			skip();
 			return true;
 		}
@@ -154,4 +369,116 @@ public class VsSolutionParser {
 	private IllegalArgumentException ex(String message) {
 		return new IllegalArgumentException(fileName + ":" + prevLineNumber() + ": " + message);
 	}
+
+
+	/** A line together with the length of its leading whitespace */
+	private static final class Line {
+		final String text;
+		final int indent;
+
+		Line(String text) {
+			this.text = text;
+			this.indent = indent(text);
+		}
+	}
+
+	private interface LineSource {
+		/** @return the next line without line terminator or null at the end of the input */
+		String readLine() throws IOException;
+	}
+
+	/** Lines that have already been split starting at an offset */
+	private static final class ListLineSource implements LineSource {
+		private final List<String> lines;
+		private int next;
+
+		ListLineSource(List<String> lines, int offset) {
+			this.lines = lines;
+			this.next = offset;
+		}
+
+		@Override
+		public String readLine() {
+			return next < lines.size() ? lines.get(next++) : null;
+		}
+	}
+
+	/**
+	 * Splits the input into lines at LF or CRLF while detecting the newline style (from the first line feed) and an
+	 * optional BOM. Like splitting the whole content with {@code "\r?\n"}, a final empty line is not reported.
+	 */
+	private static final class LineReader implements LineSource {
+		private final Reader reader;
+		private final char[] buffer = new char[8192];
+		private final StringBuilder partial = new StringBuilder();
+		private int position;
+		private int limit;
+		private boolean started;
+		private boolean eof;
+		boolean hasBom;
+		private String newline;
+
+		LineReader(Reader reader) {
+			this.reader = reader;
+		}
+
+		String newline() {
+			return newline != null ? newline : "\n";
+		}
+
+		@Override
+		public String readLine() throws IOException {
+			partial.setLength(0);
+			while (true) {
+				if (position == limit && !fill()) {
+					return partial.length() > 0 ? partial.toString() : null;
+				}
+				int start = position;
+				while (position < limit && buffer[position] != '\n') {
+					position++;
+				}
+				if (position == limit) {
+					partial.append(buffer, start, position - start);
+					continue;
+				}
+				// found a line feed
+				int end = position++;
+				boolean cr;
+				String line;
+				if (partial.length() == 0) {
+					cr = end > start && buffer[end - 1] == '\r';
+					line = new String(buffer, start, cr ? end - start - 1 : end - start);
+				} else {
+					partial.append(buffer, start, end - start);
+					cr = partial.charAt(partial.length() - 1) == '\r';
+					line = partial.substring(0, cr ? partial.length() - 1 : partial.length());
+				}
+				if (newline == null) {
+					newline = cr ? "\r\n" : "\n";
+				}
+				return line;
+			}
+		}
+
+		private boolean fill() throws IOException {
+			if (eof) {
+				return false;
+			}
+			int n = reader.read(buffer, 0, buffer.length);
+			if (n < 0) {
+				eof = true;
+				return false;
+			}
+			position = 0;
+			limit = n;
+			if (!started && n > 0) {
+				started = true;
+				if (buffer[0] == TextFile.BOM) {
+					hasBom = true;
+					position = 1;
+				}
+			}
+			return true;
+		}
+	}
 }
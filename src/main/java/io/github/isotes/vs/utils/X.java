@@ -7,18 +7,23 @@ package io.github.isotes.vs.utils;
 
 import io.github.isotes.vs.model.SimpleItemType;
 import org.apache.xmlbeans.SimpleValue;
+import org.apache.xmlbeans.XmlCursor;
 import org.apache.xmlbeans.XmlObject;
 import org.apache.xmlbeans.XmlString;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
+import java.nio.CharBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.regex.Pattern;
 
 /**
  * Convenience functions to access elements of project files
@@ -37,12 +42,15 @@ import java.util.function.Function;
  * <p>Based on these functions, {@link #list(List, String)} and {@link #set(List, List, CharSequence)} provide
  * get/set access to string elements that actually represent string-delimited (usually ';') lists. For this, the
  * {@link ListElementWrapper} provides an alternative mutable list implementation that is backed directly by the
- * underlying model.</p>
+ * underlying model. For hot loops, {@link #list(List, char)}, {@link #entries(List, char)} and
+ * {@link #forEachEntry(List, char, Consumer)} split on a single delimiter character without regular expressions.</p>
  *
  */
 public class X {
 	// e.g., '$(Configuration)|$(Platform)'=='Release|Win32'
 	public static final String CONFIGURATION_CONDITION = "'$(Configuration)|$(Platform)'=='";
+	/** The default delimiter of lists: a semicolon with optional surrounding whitespace */
+	public static final Pattern LIST_DELIMITER = Pattern.compile("\\s*;\\s*");
 
 	public static Optional<String> string(List<XmlObject> xmlObjectList) {
 		int n = xmlObjectList.size();
@@ -70,8 +78,64 @@ public class X {
 		return Arrays.asList(string(xmlObjectList).orElse("").split(delimiterRegex));
 	}
 
+	public static List<String> list(List<XmlObject> xmlObjectList, Pattern delimiter) {
+		return Arrays.asList(delimiter.split(string(xmlObjectList).orElse("")));
+	}
+
 	public static List<String> list(List<XmlObject> xmlObjectList) {
-		return list(xmlObjectList, "\\s*;\\s*");
+		return list(xmlObjectList, LIST_DELIMITER);
+	}
+
+	/**
+	 * Splits the value like {@link #list(List, String)} with the regular expression {@code \s*<delimiter>\s*} but
+	 * without using regular expressions
+	 *
+	 * @param xmlObjectList the string element, see {@link #string(List)}
+	 * @param delimiter a delimiter that is not a whitespace character
+	 * @return the (mutable) list of the entries
+	 */
+	public static List<String> list(List<XmlObject> xmlObjectList, char delimiter) {
+		String value = string(xmlObjectList).orElse("");
+		List<String> list = new ArrayList<>();
+		split(value, delimiter, (start, end) -> list.add(value.substring(start, end)));
+		return list;
+	}
+
+	/**
+	 * Like {@link #list(List, char)} but the entries are views of the underlying value instead of copies
+	 *
+	 * @param xmlObjectList the string element, see {@link #string(List)}
+	 * @param delimiter a delimiter that is not a whitespace character
+	 * @return the (mutable) list of the entries
+	 */
+	public static List<CharSequence> entries(List<XmlObject> xmlObjectList, char delimiter) {
+		String value = string(xmlObjectList).orElse("");
+		List<CharSequence> list = new ArrayList<>();
+		split(value, delimiter, (start, end) -> list.add(CharBuffer.wrap(value, start, end)));
+		return list;
+	}
+
+	/**
+	 * Passes the entries as split by {@link #list(List, char)} to the consumer without creating an intermediate list
+	 *
+	 * <p>To avoid allocations in hot loops, the same {@link CharSequence} instance is reused for all entries. It is
+	 * only valid during the call of the consumer; use {@link CharSequence#toString()} to retain the entry.</p>
+	 *
+	 * @param xmlObjectList the string element, see {@link #string(List)}
+	 * @param delimiter a delimiter that is not a whitespace character
+	 * @param consumer receives each entry
+	 */
+	public static void forEachEntry(List<XmlObject> xmlObjectList, char delimiter, Consumer<CharSequence> consumer) {
+		Slice slice = new Slice(string(xmlObjectList).orElse(""));
+		split(slice.value, delimiter, (start, end) -> {
+			slice.start = start;
+			slice.end = end;
+			consumer.accept(slice);
+		});
+	}
+
+	public static void forEachEntry(List<XmlObject> xmlObjectList, Consumer<CharSequence> consumer) {
+		forEachEntry(xmlObjectList, ';', consumer);
 	}
 
 	public static void set(List<XmlObject> xmlObjectList, List<String> newValue, CharSequence delimiter) {
@@ -104,6 +168,16 @@ public class X {
 		return xmlObject.getDomNode().getLocalName();
 	}
 
+	/** @return a stamp that detects any later modification of the document of the object */
+	public static XmlCursor.ChangeStamp changeStamp(XmlObject xmlObject) {
+		XmlCursor cursor = xmlObject.newCursor();
+		try {
+			return cursor.getDocChangeStamp();
+		} finally {
+			cursor.dispose();
+		}
+	}
+
 	public static <T> Optional<T> optionalComponent(List<T> components) {
 		int n = components.size();
 		return n == 0 ? Optional.empty() : Optional.of(components.get(n - 1));
@@ -205,6 +279,86 @@ public class X {
 	}
 
 
+	private interface SliceConsumer {
+		void accept(int start, int end);
+	}
+
+	/** Mutable view of a part of a string used by {@link #forEachEntry(List, char, Consumer)} */
+	private static class Slice implements CharSequence {
+		private final String value;
+		private int start;
+		private int end;
+
+		private Slice(String value) {
+			this.value = value;
+		}
+
+		@Override
+		public int length() {
+			return end - start;
+		}
+
+		@Override
+		public char charAt(int index) {
+			if (index < 0 || index >= length()) {
+				throw new IndexOutOfBoundsException("index " + index + ", length " + length());
+			}
+			return value.charAt(start + index);
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			return value.subSequence(this.start + start, this.start + end);
+		}
+
+		@Override
+		public String toString() {
+			return value.substring(start, end);
+		}
+	}
+
+	/* Same result as Pattern.split(value) for \s*<delimiter>\s*: leading empty entries are kept, trailing ones are
+	 * dropped, and a value without delimiter is the only entry even if empty */
+	private static void split(String value, char delimiter, SliceConsumer consumer) {
+		int n = value.length();
+		int d = value.indexOf(delimiter);
+		if (d < 0) {
+			consumer.accept(0, n);
+			return;
+		}
+		int pos = 0;
+		int pendingEmpty = 0;
+		while (true) {
+			int end = d < 0 ? n : d;
+			if (d >= 0) {
+				while (end > pos && isWhitespace(value.charAt(end - 1))) {
+					end--;
+				}
+			}
+			if (pos == end) {
+				pendingEmpty++;
+			} else {
+				for (; pendingEmpty > 0; pendingEmpty--) {
+					consumer.accept(pos, pos);
+				}
+				consumer.accept(pos, end);
+			}
+			if (d < 0) {
+				return;
+			}
+			pos = d + 1;
+			while (pos < n && isWhitespace(value.charAt(pos))) {
+				pos++;
+			}
+			d = value.indexOf(delimiter, pos);
+		}
+	}
+
+	// the characters of \s in regular expressions
+	private static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+
 	private static IllegalArgumentException throwIAE(String message) {
 		return new IllegalArgumentException(message);
 	}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2020 Robert Sauter
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.isotes.vs.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static com.google.common.truth.Truth.assertThat;
+
+class BulkEditTest {
+
+	private static VsSolution copy(Path dir) throws IOException {
+		return new VsSolution(TestUtils.copySolution(dir));
+	}
+
+	@Test
+	void edit(@TempDir Path dir) throws IOException {
+		VsSolution solution = copy(dir);
+		BulkEdit bulkEdit = new BulkEdit(solution, 2, cfg -> {
+			if (cfg.name.startsWith("Release")) {
+				cfg.propertyGroup.put("PlatformToolset", "v142");
+			}
+		});
+		assertThat(bulkEdit.failures()).isEmpty();
+		assertThat(bulkEdit.results).hasSize(4);
+		assertThat(bulkEdit.written()).hasSize(4);
+		for (BulkEdit.ProjectResult result : bulkEdit.results) {
+			assertThat(result.configurations).isGreaterThan(result.changedConfigurations);
+			assertThat(result.changedConfigurations).isGreaterThan(0);
+			ProjectWrapper pw = new ProjectWrapper(result.project.path);
+			for (ProjectConfiguration pc : pw.configurations()) {
+				assertThat(pc.resolve().propertyGroup.get("PlatformToolset")).isEqualTo(pc.name.startsWith("Release") ? "v142" : "v140");
+			}
+		}
+
+		// applying the same edit again does not change anything
+		BulkEdit again = new BulkEdit(solution, 1, 1, new ProjectCache()::get, cfg -> {
+			if (cfg.name.startsWith("Release")) {
+				cfg.propertyGroup.put("PlatformToolset", "v142");
+			}
+		});
+		assertThat(again.written()).isEmpty();
+		for (BulkEdit.ProjectResult result : again.results) {
+			assertThat(result.changedConfigurations).isEqualTo(0);
+		}
+	}
+
+	@Test
+	void collectFailures(@TempDir Path dir) throws IOException {
+		VsSolution solution = copy(dir);
+		VsSolutionProject browser = solution.projects.get(0);
+		browser.path = browser.path.resolveSibling("Missing.vcxproj");
+		BulkEdit bulkEdit = new BulkEdit(solution, 2, cfg -> cfg.propertyGroup.put("PlatformToolset", "v142"));
+		assertThat(bulkEdit.failures()).hasSize(1);
+		assertThat(bulkEdit.failures().get(0).project).isSameInstanceAs(browser);
+		assertThat(bulkEdit.written()).hasSize(3);
+	}
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2020 Robert Sauter
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.isotes.vs.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ConditionTest {
+
+	@Test
+	void configurations() {
+		Condition exact = Condition.parse(X.configurationCondition(ConfigurationWrapperTest.CONFIG));
+		assertThat(exact.appliesTo("Release|x64", null)).isTrue();
+		assertThat(exact.appliesTo("Debug|x64", null)).isFalse();
+		assertThat(Condition.parse(" '$(Configuration)|$(Platform)' == 'release|X64' ").appliesTo("Release|x64", null)).isTrue();
+
+		Condition complex = Condition.parse("'$(Configuration)'=='Debug' or ('$(Platform)'=='x64' AND !('$(Configuration)'=='Release'))");
+		assertThat(complex.appliesTo("Debug|Win32", null)).isTrue();
+		assertThat(complex.appliesTo("Profile|x64", null)).isTrue();
+		assertThat(complex.appliesTo("Release|x64", null)).isFalse();
+		assertThat(Condition.parse(null).appliesTo("Release|x64", null)).isTrue();
+		assertThat(Condition.parse("'a'=='a'")).isSameInstanceAs(Condition.parse("'a'=='a'"));
+	}
+
+	@Test
+	void evaluate(@TempDir Path dir) throws Exception {
+		Files.createFile(dir.resolve("exists.props"));
+		Map<String, String> properties = new HashMap<>();
+		properties.put("Version", "14.0");
+		properties.put("Dir", "out\\");
+		assertThat(Condition.parse("'$(Version)' >= '12.0' and $(Version) < 15").evaluate(properties::get)).isTrue();
+		assertThat(Condition.parse("'1.0' == '1' and '$(Undefined)' == ''").evaluate(properties::get)).isTrue();
+		assertThat(Condition.parse("HasTrailingSlash('$(Dir)') and true").evaluate(properties::get)).isTrue();
+		assertThat(Condition.parse("Exists('exists.props')").evaluate(properties::get, dir)).isTrue();
+		assertThat(Condition.parse("!exists('$(Dir)missing.props')").evaluate(properties::get, dir)).isTrue();
+		assertThat(Condition.parse("Exists('exists.props')").evaluate(properties::get)).isFalse();
+
+		assertThrows(IllegalArgumentException.class, () -> Condition.parse("'a' = 'b'"));
+		assertThrows(IllegalArgumentException.class, () -> Condition.parse("('a'=='a'"));
+		assertThrows(IllegalArgumentException.class, () -> Condition.parse("Unknown('a')"));
+		assertThrows(IllegalArgumentException.class, () -> Condition.parse("Unknown('a')"));
+		assertThat(Condition.parseOrFalse("Unknown('a')").evaluate(properties::get)).isFalse();
+		assertThat(Condition.parseOrFalse("Unknown('a')")).isSameInstanceAs(Condition.parseOrFalse("Unknown('a')"));
+		assertThrows(IllegalArgumentException.class, () -> Condition.parse("'$(Dir)' < 1").evaluate(properties::get));
+	}
+}
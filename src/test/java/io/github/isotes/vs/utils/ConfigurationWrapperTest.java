@@ -6,9 +6,15 @@
 package io.github.isotes.vs.utils;
 
 import io.github.isotes.vs.model.ImportType;
+import io.github.isotes.vs.model.ProjectDocument;
+import org.apache.xmlbeans.XmlObject;
 import org.junit.jupiter.api.Test;
+import org.w3c.dom.Node;
 
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 
 import static com.google.common.truth.Truth.assertThat;
@@ -32,6 +38,61 @@ class ConfigurationWrapperTest {
 				"PlatformToolset", "v140");
 	}
 
+	@Test
+	void propertyGroupModify() {
+		PropertyGroupWrapper group = TestUtils.projectWrapper(LIB_VCXPROJ).getConfiguration(CONFIG).propertyGroup;
+		assertThat(group.get("CharacterSet")).isEqualTo("Unicode");
+		assertThat(group.put("CharacterSet", "MultiByte")).isEqualTo("Unicode");
+		assertThat(group.remove("ConfigurationType")).isEqualTo("StaticLibrary");
+		assertThat(group.put("ConfigurationType", "DynamicLibrary")).isNull();
+		assertThat(group.get("ConfigurationType")).isEqualTo("DynamicLibrary");
+		assertThat(group.remove("UseDebugLibraries")).isEqualTo("false");
+		assertThat(group.containsKey("UseDebugLibraries")).isFalse();
+		assertThat(group.remove("UseDebugLibraries")).isNull();
+		group.entrySet().removeIf(e -> e.getKey().equals("WholeProgramOptimization"));
+		assertThat(group.get("WholeProgramOptimization")).isNull();
+		assertThat(group).containsExactly(
+				"CharacterSet", "MultiByte",
+				"PlatformToolset", "v140",
+				"ConfigurationType", "DynamicLibrary").inOrder();
+	}
+
+	@Test
+	void conditions() {
+		ProjectWrapper pw = TestUtils.projectWrapper(LIB_VCXPROJ);
+		ConfigurationWrapper cfg = pw.getConfiguration(CONFIG);
+		assertThat(cfg.propertyGroups).contains(cfg.propertyGroup.propertyGroup);
+		assertThat(cfg.propertyGroups).contains(pw.getPropertyGroup("Globals"));
+		assertThat(cfg.itemDefinitionGroups).contains(cfg.itemDefinitionGroup);
+
+		// other spelling of the condition is found via evaluation
+		cfg.itemDefinitionGroup.setCondition(" '$(Configuration)' == 'release' And '$(Platform)' == 'x64' ");
+		ConfigurationWrapper changed = pw.getConfiguration(CONFIG);
+		assertThat(changed.itemDefinitionGroup).isSameInstanceAs(cfg.itemDefinitionGroup);
+		assertThat(X.string(changed.clCompile.getWarningLevelList())).hasValue("Level4");
+		assertThat(pw.getConfiguration("Debug|x64").itemDefinitionGroups).doesNotContain(cfg.itemDefinitionGroup);
+
+		// removed groups are detected without accessing them
+		int count = changed.propertyGroups.size();
+		pw.project.removePropertyGroup(pw.project.getPropertyGroupList().indexOf(changed.propertyGroup.propertyGroup));
+		assertThat(pw.getConfiguration(CONFIG).propertyGroups).hasSize(count - 1);
+		assertThat(pw.getConfiguration("Unknown|x64").propertyGroup).isNull();
+	}
+
+	@Test
+	void fallback() throws Exception {
+		ProjectWrapper pw = new ProjectWrapper(ProjectDocument.Factory.parse(
+				"<Project xmlns=\"http://schemas.microsoft.com/developer/msbuild/2003\">"
+						+ "<ItemGroup Label=\"ProjectConfigurations\"><ProjectConfiguration Include=\"Release|x64\" /></ItemGroup>"
+						+ "<PropertyGroup Condition=\"'$(VisualStudioVersion)'==''\"><VisualStudioVersion>14.0</VisualStudioVersion></PropertyGroup>"
+						+ "<PropertyGroup Condition=\"'$(Configuration)'=='Release'\"><Optimize>true</Optimize></PropertyGroup>"
+						+ "</Project>"));
+		ConfigurationWrapper cfg = pw.getConfiguration(CONFIG);
+		assertThat(cfg.propertyGroups).hasSize(2);
+		// the guard is listed but its condition does not select the configuration
+		assertThat(cfg.propertyGroup.get("Optimize")).isEqualTo("true");
+	}
+
 	@Test
 	void importGroup() {
 		List<ImportType> importList = libCfg.importGroup.getImportList();
@@ -49,6 +110,27 @@ class ConfigurationWrapperTest {
 		assertThat(X.string(libCfg.clCompile.getStringPoolingList())).isEmpty();
 	}
 
+	@Test
+	void listSplitting() {
+		List<XmlObject> definitions = libCfg.clCompile.getPreprocessorDefinitionsList();
+		assertThat(X.list(definitions, ';')).isEqualTo(X.list(definitions));
+		assertThat(X.list(definitions, X.LIST_DELIMITER)).isEqualTo(X.list(definitions));
+		List<String> entries = new ArrayList<>();
+		for (CharSequence entry : X.entries(definitions, ';')) {
+			entries.add(entry.toString());
+		}
+		assertThat(entries).isEqualTo(X.list(definitions));
+		entries.clear();
+		X.forEachEntry(definitions, entry -> entries.add(entry.toString()));
+		assertThat(entries).isEqualTo(X.list(definitions));
+
+		X.set(definitions, " ;A ; B;;C ;; ");
+		assertThat(X.list(definitions, ';')).containsExactly("", "A", "B", "", "C").inOrder();
+		assertThat(X.list(definitions, ';')).isEqualTo(X.list(definitions));
+		X.set(definitions, "");
+		assertThat(X.list(definitions, ';')).containsExactly("");
+	}
+
 	@Test
 	void link() {
 		assertThat(X.string(libCfg.link.getEnableCOMDATFoldingList())).hasValue("true");
@@ -75,6 +157,27 @@ class ConfigurationWrapperTest {
 		assertThat(appCfg.getAdditionalLibraryDirectories()).containsExactly("$(SolutionDir)$(Configuration)\\");
 	}
 
+	@Test
+	void listEdits() {
+		ListElementWrapper definitions = appCfg.getPreprocessorDefinitions();
+		definitions.add(0, "UNICODE");
+		assertThat(definitions.remove(1)).isEqualTo("WIN32");
+		assertThat(definitions.addAll(Arrays.asList("_WINDOWS", "NDEBUG", "ZLIB"))).isTrue();
+		assertThat(definitions.dedupe()).isTrue();
+		assertThat(definitions.dedupe()).isFalse();
+		assertThat(definitions.removeIf(d -> d.startsWith("%"))).isTrue();
+		assertThat(definitions.removeIf(d -> d.startsWith("%"))).isFalse();
+		definitions.sort(Comparator.naturalOrder());
+		assertThat(definitions).containsExactly("NDEBUG", "UNICODE", "ZLIB", "_WINDOWS").inOrder();
+		assertThat(X.string(appCfg.clCompile.getPreprocessorDefinitionsList())).hasValue("NDEBUG;UNICODE;ZLIB;_WINDOWS");
+
+		X.set(appCfg.clCompile.getPreprocessorDefinitionsList(), "A; B");
+		assertThat(definitions).containsExactly("A", "B").inOrder();
+		assertThat(definitions.edit(list -> list.set(1, "C"))).isTrue();
+		definitions.clear();
+		assertThat(X.string(appCfg.clCompile.getPreprocessorDefinitionsList())).hasValue("");
+	}
+
 	@Test
 	void getOutputFile() {
 		assertThat(libCfg.getOutputFile()).isEqualTo("$(OutDir)$(TargetName)$(TargetExt)");
@@ -90,4 +193,24 @@ class ConfigurationWrapperTest {
 		assertThat(libCfg.isLibrary()).isTrue();
 		assertThat(appCfg.isLibrary()).isFalse();
 	}
+
+	@Test
+	void configurationIndex() {
+		ProjectWrapper pw = TestUtils.projectWrapper(LIB_VCXPROJ);
+		ConfigurationWrapper cfg = pw.getConfiguration(CONFIG);
+		assertThat(pw.getConfiguration(CONFIG).itemDefinitionGroup).isSameInstanceAs(cfg.itemDefinitionGroup);
+		assertThat(pw.getConfiguration(CONFIG).clCompile).isSameInstanceAs(cfg.clCompile);
+		assertThat(pw.getConfiguration("Missing|x64").propertyGroup).isNull();
+
+		cfg.propertyGroup.propertyGroup.setCondition(X.configurationCondition("Renamed|x64"));
+		assertThat(pw.getConfiguration("Renamed|x64").propertyGroup.propertyGroup).isSameInstanceAs(cfg.propertyGroup.propertyGroup);
+		assertThat(pw.getConfiguration(CONFIG).propertyGroup).isNull();
+		assertThat(pw.getConfiguration(CONFIG).itemDefinitionGroup).isSameInstanceAs(cfg.itemDefinitionGroup);
+
+		// replacing an item keeps the number of items
+		Node clCompile = cfg.clCompile.getDomNode();
+		Node replacement = clCompile.cloneNode(true);
+		clCompile.getParentNode().replaceChild(replacement, clCompile);
+		assertThat(pw.getConfiguration(CONFIG).clCompile.getDomNode()).isSameInstanceAs(replacement);
+	}
 }
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2020 Robert Sauter
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.isotes.vs.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DependencyGraphTest {
+	private final VsSolution solution = new VsSolution(VsSolutionTest.SLN);
+	private final VsSolutionProject browser = solution.byName("Browser");
+	private final VsSolutionProject common = solution.byName("Common");
+	private final VsSolutionProject annotator = solution.byName("Annotator");
+
+	@Test
+	void order() {
+		DependencyGraph graph = new DependencyGraph(new LoadedSolution(solution));
+		assertThat(graph.cycle().isPresent()).isFalse();
+		List<VsSolutionProject> order = graph.topologicalOrder();
+		assertThat(order).containsAtLeast(common, annotator, browser).inOrder();
+		assertThat(graph.waves().get(0)).contains(common);
+		assertThat(graph.transitiveDependencies(browser)).containsAtLeast(common, annotator);
+		assertThat(graph.transitiveDependents(common)).containsAtLeast(annotator, browser);
+		assertThat(graph.criticalPath()).containsAtLeast(common, annotator, browser).inOrder();
+	}
+
+	@Test
+	void cycle() {
+		DependencyGraph graph = new DependencyGraph(solution);
+		assertThat(graph.transitiveDependencies(browser)).containsAtLeast(common, annotator);
+		graph.addDependency(common, browser);
+		assertThat(graph.cycle().get()).containsAtLeast(common, browser, annotator);
+		assertThrows(IllegalArgumentException.class, graph::topologicalOrder);
+		graph.removeDependency(common, browser);
+		assertThat(graph.transitiveDependencies(browser)).containsAtLeast(common, annotator);
+	}
+
+	@Test
+	void danglingDependencies() {
+		String folderGuid = "{3C1B5F63-1D3E-4E57-9D43-8C8B0AD8A1F0}";
+		solution.projects.add(new VsSolutionProject(0, VsSolutionTest.SLN.getParent(), ProjectType.SOLUTION_FOLDER.guid,
+				"Folder", "Folder", folderGuid));
+		VsSolutionSection section = browser.sections.stream().filter(vss -> "ProjectDependencies".equals(vss.label)).findFirst().get();
+		section.content.add("{00000000-0000-0000-0000-000000000001} = {00000000-0000-0000-0000-000000000001}");
+		section.content.add(folderGuid + " = " + folderGuid);
+
+		DependencyGraph graph = new DependencyGraph(solution);
+		assertThat(graph.projects()).doesNotContain(solution.byGuid(folderGuid));
+		assertThat(graph.dependencies(browser)).containsExactly(annotator);
+	}
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2020 Robert Sauter
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.isotes.vs.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import static com.google.common.truth.Truth.assertThat;
+
+class GenericPropertyGroupTest {
+	private final ProjectWrapper project = TestUtils.projectWrapper("Hilo2015/Common/Common.vcxproj");
+
+	@Test
+	void modify() {
+		GenericPropertyGroup userMacros = project.getUserMacrosPropertyGroup();
+		assertThat(userMacros).isEmpty();
+		assertThat(userMacros.put("BuildRoot", "$(SolutionDir)build\\")).isNull();
+		assertThat(userMacros.put("ThirdParty", "$(SolutionDir)3rdparty\\")).isNull();
+		assertThat(userMacros.put("BuildRoot", "$(SolutionDir)out\\")).isEqualTo("$(SolutionDir)build\\");
+		assertThat(userMacros).containsExactly("BuildRoot", "$(SolutionDir)out\\", "ThirdParty", "$(SolutionDir)3rdparty\\").inOrder();
+		assertThat(userMacros.containsKey("ThirdParty")).isTrue();
+		assertThat(userMacros.get("Missing")).isNull();
+
+		assertThat(userMacros.remove("BuildRoot")).isEqualTo("$(SolutionDir)out\\");
+		assertThat(userMacros).containsExactly("ThirdParty", "$(SolutionDir)3rdparty\\");
+
+		// a new wrapper sees the changes in the underlying XML
+		GenericPropertyGroup other = project.getUserMacrosPropertyGroup();
+		Iterator<Map.Entry<String, String>> it = other.entrySet().iterator();
+		it.next().setValue("external\\");
+		assertThat(userMacros.get("ThirdParty")).isEqualTo("external\\");
+		it.remove();
+		assertThat(other).isEmpty();
+		userMacros.invalidate();
+		assertThat(userMacros).isEmpty();
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2020 Robert Sauter
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.isotes.vs.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static com.google.common.truth.Truth.assertThat;
+
+class ImportResolverTest {
+	private static final String NS = "xmlns=\"http://schemas.microsoft.com/developer/msbuild/2003\"";
+
+	private static void write(Path file, String content) throws Exception {
+		Files.createDirectories(file.getParent());
+		Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String project(String imports) {
+		return "<Project DefaultTargets=\"Build\" ToolsVersion=\"14.0\" " + NS + ">\n"
+				+ "  <ItemGroup Label=\"ProjectConfigurations\">\n"
+				+ "    <ProjectConfiguration Include=\"Debug|x64\"><Configuration>Debug</Configuration><Platform>x64</Platform></ProjectConfiguration>\n"
+				+ "    <ProjectConfiguration Include=\"Release|x64\"><Configuration>Release</Configuration><Platform>x64</Platform></ProjectConfiguration>\n"
+				+ "  </ItemGroup>\n"
+				+ "  <PropertyGroup><PropsDir>..\\props\\</PropsDir></PropertyGroup>\n"
+				+ imports
+				+ "</Project>\n";
+	}
+
+	@Test
+	void resolve(@TempDir Path dir) throws Exception {
+		write(dir.resolve("props/common.props"), "<Project " + NS + ">\n"
+				+ "  <PropertyGroup><Shared>$(MSBuildThisFileDirectory)shared</Shared></PropertyGroup>\n"
+				+ "  <PropertyGroup Condition=\"'$(Configuration)'=='Release'\"><Optimize>true</Optimize></PropertyGroup>\n"
+				+ "  <Import Project=\"release.props\" Condition=\"'$(Optimize)'=='true'\" />\n"
+				+ "  <Import Project=\"common.props\" />\n"
+				+ "</Project>\n");
+		write(dir.resolve("props/release.props"), "<Project " + NS + ">\n"
+				+ "  <ItemDefinitionGroup><ClCompile><WarningLevel>Level4</WarningLevel></ClCompile></ItemDefinitionGroup>\n"
+				+ "</Project>\n");
+		write(dir.resolve("a/a.vcxproj"), project("  <ImportGroup Label=\"PropertySheets\">\n"
+				+ "    <Import Project=\"$(PropsDir)common.props\" />\n"
+				+ "    <Import Project=\"missing.props\" />\n"
+				+ "    <Import Project=\"optional.props\" Condition=\"Exists('optional.props')\" />\n"
+				+ "  </ImportGroup>\n"));
+		write(dir.resolve("b/b.vcxproj"), project("  <Import Project=\"$(PropsDir)common.props\" />\n"));
+
+		ImportResolver resolver = new ImportResolver();
+		ImportResolver.Chain release = resolver.resolve(new ProjectWrapper(dir.resolve("a/a.vcxproj")), "Release|x64");
+		assertThat(release.imports).hasSize(3);
+		ImportResolver.ResolvedImport common = release.imports.get(0);
+		assertThat(common.path).isEqualTo(dir.resolve("props/common.props").toAbsolutePath().normalize());
+		assertThat(common.depth).isEqualTo(0);
+		assertThat(common.sheet.propertyGroups).hasSize(2);
+		ImportResolver.ResolvedImport nested = release.imports.get(1);
+		assertThat(nested.depth).isEqualTo(1);
+		assertThat(nested.sheet.itemDefinitionGroups.get(0).items.get("ClCompile")).containsEntry("WarningLevel", "Level4");
+		ImportResolver.ResolvedImport missing = release.imports.get(2);
+		assertThat(missing.sheet).isNull();
+		assertThat(missing.failure).isNotNull();
+		assertThat(release.properties).containsEntry("Optimize", "true");
+		assertThat(release.properties.get("Shared")).endsWith("shared");
+
+		ProjectWrapper b = new ProjectWrapper(dir.resolve("b/b.vcxproj"));
+		Map<String, ImportResolver.Chain> chains = resolver.resolve(b);
+		assertThat(chains.keySet()).containsExactly("Debug|x64", "Release|x64").inOrder();
+		assertThat(chains.get("Debug|x64").imports).hasSize(1);
+		assertThat(chains.get("Debug|x64").properties).doesNotContainKey("Optimize");
+		assertThat(chains.get("Release|x64").imports.get(0).sheet).isSameInstanceAs(common.sheet);
+		assertThat(chains.get("Release|x64").imports.get(1).sheet).isSameInstanceAs(nested.sheet);
+		// common.props, release.props, and missing.props
+		assertThat(resolver.size()).isEqualTo(3);
+	}
+
+	@Test
+	void projectDefinitionsInOrder(@TempDir Path dir) throws Exception {
+		write(dir.resolve("props/level.props"), "<Project " + NS + ">\n"
+				+ "  <PropertyGroup><Level>sheet</Level><Kept>sheet</Kept></PropertyGroup>\n"
+				+ "</Project>\n");
+		write(dir.resolve("props/project.props"), "<Project " + NS + ">\n"
+				+ "  <PropertyGroup><Seen>$(Level)</Seen></PropertyGroup>\n"
+				+ "</Project>\n");
+		write(dir.resolve("a/a.vcxproj"), project("  <Import Project=\"$(PropsDir)level.props\" />\n"
+				+ "  <PropertyGroup><Level>project</Level></PropertyGroup>\n"
+				+ "  <Import Project=\"$(PropsDir)project.props\" Condition=\"'$(Level)'=='project'\" />\n"));
+
+		ImportResolver.Chain chain = new ImportResolver().resolve(new ProjectWrapper(dir.resolve("a/a.vcxproj")), "Debug|x64");
+		assertThat(chain.imports).hasSize(2);
+		assertThat(chain.properties).containsEntry("Level", "project");
+		assertThat(chain.properties).containsEntry("Kept", "sheet");
+		assertThat(chain.properties).containsEntry("Seen", "project");
+	}
+}
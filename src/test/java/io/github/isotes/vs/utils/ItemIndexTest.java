@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2020 Robert Sauter
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.isotes.vs.utils;
+
+import io.github.isotes.vs.model.ItemGroupType;
+import io.github.isotes.vs.model.SimpleItemType;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+class ItemIndexTest {
+
+	private static List<String> includes(ProjectWrapper pw) {
+		List<String> r = new ArrayList<>();
+		for (ItemGroupType itemGroup : pw.project.getItemGroupList()) {
+			for (SimpleItemType item : itemGroup.getItemList()) {
+				r.add(item.getInclude());
+			}
+		}
+		return r;
+	}
+
+	@Test
+	void queries() {
+		LoadedSolution loaded = new LoadedSolution(new VsSolution(VsSolutionTest.SLN));
+		ItemIndex index = new ItemIndex(loaded);
+		List<ItemIndex.Item> cpp = index.withExtension(".cpp");
+		assertThat(cpp).isNotEmpty();
+		assertThat(index.glob("**/*.CPP")).containsExactlyElementsIn(cpp).inOrder();
+		for (ItemIndex.Item item : cpp) {
+			assertThat(item.path).endsWith(".cpp");
+		}
+
+		ItemIndex.Item first = cpp.get(0);
+		Path file = first.project.path.getParent().resolve(first.include.replace('\\', '/'));
+		assertThat(index.byPath(file)).contains(first);
+		assertThat(index.projects(file)).contains(first.project);
+		assertThat(index.startingWith(first.project.path.getParent().toString() + "/")).contains(first);
+		assertThat(index.byType(first.type)).contains(first);
+		int items = 0;
+		for (ProjectWrapper pw : loaded.projects.values()) {
+			items += includes(pw).size();
+		}
+		assertThat(index.items()).hasSize(items);
+	}
+
+	@Test
+	void addRemove() {
+		ProjectWrapper pw = TestUtils.projectWrapper(ConfigurationWrapperTest.LIB_VCXPROJ);
+		ItemIndex index = new ItemIndex(pw);
+		int itemGroups = pw.project.getItemGroupList().size();
+
+		ItemIndex.Item added = index.add(pw, "ClCompile", "New\\Added.cpp");
+		assertThat(index.byPath("new/added.cpp")).containsExactly(added);
+		assertThat(index.glob("new/*.cpp")).containsExactly(added);
+		assertThat(added.metadata()).isEmpty();
+		assertThat(includes(pw)).contains("New\\Added.cpp");
+		assertThat(pw.project.getItemGroupList()).hasSize(itemGroups);
+
+		ItemIndex.Item text = index.add(pw, "SomeNewType", "readme.txt");
+		assertThat(index.byType("SomeNewType")).containsExactly(text);
+		assertThat(pw.project.getItemGroupList()).hasSize(itemGroups + 1);
+
+		assertThat(index.remove(added)).isTrue();
+		assertThat(index.remove(added)).isFalse();
+		assertThat(index.byPath("new/added.cpp")).isEmpty();
+		assertThat(index.withExtension("cpp")).doesNotContain(added);
+		assertThat(includes(pw)).doesNotContain("New\\Added.cpp");
+	}
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2020 Robert Sauter
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.isotes.vs.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+class LoadedSolutionTest {
+
+	@Test
+	void load() {
+		VsSolution solution = new VsSolution(VsSolutionTest.SLN);
+		LoadedSolution loaded = new LoadedSolution(solution, 2);
+		assertThat(loaded.failures).isEmpty();
+		assertThat(loaded.projects).hasSize(4);
+		assertThat(loaded.projects.keySet())
+				.containsExactlyElementsIn(solution.projects.stream().map(v -> v.guid).toArray()).inOrder();
+		for (VsSolutionProject vsp : solution.projects) {
+			assertThat(loaded.get(vsp).path).isEqualTo(vsp.path);
+		}
+	}
+
+	@Test
+	void collectFailures() {
+		VsSolution solution = new VsSolution(VsSolutionTest.SLN);
+		VsSolutionProject browser = solution.projects.get(0);
+		browser.path = browser.path.resolveSibling("Missing.vcxproj");
+		LoadedSolution loaded = new LoadedSolution(solution, 2);
+		assertThat(loaded.projects).hasSize(3);
+		assertThat(loaded.failures.keySet()).containsExactly(browser.guid);
+		assertThat(loaded.get(browser)).isNull();
+	}
+}
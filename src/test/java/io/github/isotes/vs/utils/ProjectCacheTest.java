@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2020 Robert Sauter
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.isotes.vs.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+
+import static com.google.common.truth.Truth.assertThat;
+
+class ProjectCacheTest {
+	private static final Path COMMON = TestUtils.file("Hilo2015/Common/Common.vcxproj");
+	private static final Path ANNOTATOR = TestUtils.file("Hilo2015/Annotator/Annotator.vcxproj");
+
+	@Test
+	void isolatedCopies() {
+		ProjectCache cache = new ProjectCache();
+		ProjectWrapper first = cache.get(COMMON);
+		first.getConfiguration("Release|x64").propertyGroup.put("PlatformToolset", "v142");
+		ProjectWrapper second = cache.get(COMMON);
+		assertThat(second).isNotSameInstanceAs(first);
+		assertThat(second.getConfiguration("Release|x64").propertyGroup.get("PlatformToolset")).isEqualTo("v140");
+		assertThat(cache.misses()).isEqualTo(1);
+		assertThat(cache.hits()).isEqualTo(1);
+		assertThat(second.stringify()).isEqualTo(new ProjectWrapper(COMMON).stringify());
+	}
+
+	@Test
+	void eviction() {
+		ProjectCache cache = new ProjectCache(1, Long.MAX_VALUE);
+		cache.get(COMMON);
+		cache.get(ANNOTATOR);
+		assertThat(cache.size()).isEqualTo(1);
+		assertThat(cache.evictions()).isEqualTo(1);
+		cache.get(COMMON);
+		assertThat(cache.misses()).isEqualTo(3);
+	}
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2020 Robert Sauter
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.isotes.vs.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+class ProjectReaderTest {
+
+	@Test
+	void sameAsFreeze() {
+		for (VsSolutionProject vsp : new VsSolution(VsSolutionTest.SLN).projects) {
+			ProjectSnapshot expected = new ProjectWrapper(vsp.path).freeze();
+			ProjectSnapshot snapshot = new ProjectReader().read(vsp.path);
+			assertThat(snapshot.configurations).containsExactlyElementsIn(expected.configurations).inOrder();
+			assertThat(snapshot.globals).containsExactlyEntriesIn(expected.globals).inOrder();
+			assertThat(snapshot.userMacros).containsExactlyEntriesIn(expected.userMacros).inOrder();
+			assertThat(snapshot.items).containsExactlyEntriesIn(expected.items).inOrder();
+			assertThat(snapshot.newline).isEqualTo(expected.newline);
+			assertThat(snapshot.hasBom).isEqualTo(expected.hasBom);
+		}
+	}
+
+	@Test
+	void filter() {
+		ProjectSnapshot all = new ProjectReader().read(TestUtils.file(ConfigurationWrapperTest.LIB_VCXPROJ));
+		ProjectSnapshot settings = new ProjectReader(ProjectReader.SETTINGS).read(TestUtils.file(ConfigurationWrapperTest.LIB_VCXPROJ));
+		assertThat(settings.configurations).containsExactlyElementsIn(all.configurations).inOrder();
+		assertThat(settings.items.keySet()).containsExactly("ProjectConfiguration");
+
+		ProjectSnapshot properties = new ProjectReader(path -> !path.equals("ItemDefinitionGroup"))
+				.read(TestUtils.file(ConfigurationWrapperTest.LIB_VCXPROJ));
+		ProjectSnapshot.Configuration release = properties.configuration(ConfigurationWrapperTest.CONFIG);
+		assertThat(release.properties).containsEntry("PlatformToolset", "v140");
+		assertThat(release.clCompile).isEmpty();
+		assertThat(release.lib).isEmpty();
+	}
+}
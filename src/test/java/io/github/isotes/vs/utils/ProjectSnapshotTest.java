@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2020 Robert Sauter
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.isotes.vs.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+class ProjectSnapshotTest {
+
+	@Test
+	void freezeThaw() {
+		ProjectWrapper pw = TestUtils.projectWrapper(ConfigurationWrapperTest.LIB_VCXPROJ);
+		ProjectSnapshot snapshot = pw.freeze();
+		ProjectSnapshot.Configuration release = snapshot.configuration(ConfigurationWrapperTest.CONFIG);
+		assertThat(release.properties).containsEntry("PlatformToolset", "v140");
+		assertThat(release.clCompile).containsEntry("WarningLevel", "Level4");
+		assertThat(release.lib).containsEntry("TargetMachine", "MachineX64");
+		assertThat(snapshot.configurations).hasSize(pw.configurations().size());
+		assertThat(snapshot.items.get("ProjectConfiguration")).hasSize(snapshot.configurations.size());
+
+		pw.getConfiguration(ConfigurationWrapperTest.CONFIG).propertyGroup.put("PlatformToolset", "v142");
+		assertThat(release.properties).containsEntry("PlatformToolset", "v140");
+		ProjectSnapshot next = pw.freeze(snapshot);
+		assertThat(next.configuration(ConfigurationWrapperTest.CONFIG).properties).containsEntry("PlatformToolset", "v142");
+		for (ProjectSnapshot.Configuration configuration : next.configurations) {
+			if (!configuration.name.equals(ConfigurationWrapperTest.CONFIG)) {
+				assertThat(configuration).isSameInstanceAs(snapshot.configuration(configuration.name));
+			}
+		}
+		assertThat(next.items).isNotSameInstanceAs(snapshot.items);
+		assertThat(next.items.get("ClCompile")).isSameInstanceAs(snapshot.items.get("ClCompile"));
+		assertThat(next.globals).isSameInstanceAs(snapshot.globals);
+		// unchanged projects reuse the previous snapshot and its document
+		assertThat(pw.freeze(next)).isSameInstanceAs(next);
+		assertThat(next.thaw().freeze(next)).isSameInstanceAs(next);
+
+		ProjectWrapper thawed = next.thaw();
+		assertThat(thawed.stringify()).isEqualTo(pw.stringify());
+		thawed.getConfiguration(ConfigurationWrapperTest.CONFIG).propertyGroup.put("PlatformToolset", "v143");
+		assertThat(pw.getConfiguration(ConfigurationWrapperTest.CONFIG).propertyGroup.get("PlatformToolset")).isEqualTo("v142");
+		assertThat(snapshot.thaw().getConfiguration(ConfigurationWrapperTest.CONFIG).propertyGroup.get("PlatformToolset")).isEqualTo("v140");
+	}
+}
@@ -6,10 +6,14 @@
 package io.github.isotes.vs.utils;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.ByteArrayOutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.util.Arrays;
+import java.util.stream.Stream;
 
 import static com.google.common.truth.Truth.assertThat;
 import static com.google.common.truth.Truth8.assertThat;
@@ -33,4 +37,41 @@ class ProjectWrapperTest {
 			assertThat(pw.stringify()).isEqualTo(expected);
 		}
 	}
+
+	@Test
+	void write() throws Exception {
+		for (String pn : Arrays.asList("Annotator", "Browser", "Common", "RegistrationHelper")) {
+			Path original = TestUtils.file("Hilo2015/" + pn + "/" + pn + ".vcxproj");
+			ProjectWrapper pw = new ProjectWrapper(original);
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			pw.write(out, pw.newline, pw.hasBom);
+			assertThat(out.toByteArray()).isEqualTo(Files.readAllBytes(original));
+		}
+	}
+
+	@Test
+	void saveIfChanged(@TempDir Path tempDir) throws Exception {
+		Path copy = tempDir.resolve("Common.vcxproj");
+		Files.copy(TestUtils.file(VCXPROJ), copy);
+		FileTime modified = FileTime.fromMillis(0);
+		Files.setLastModifiedTime(copy, modified);
+
+		ProjectWrapper pw = new ProjectWrapper(copy);
+		assertThat(pw.saveIfChanged(copy)).isFalse();
+		assertThat(Files.getLastModifiedTime(copy)).isEqualTo(modified);
+
+		pw.getConfiguration("Release|x64").propertyGroup.put("PlatformToolset", "v142");
+		assertThat(pw.saveIfChanged(copy)).isTrue();
+		assertThat(new ProjectWrapper(copy).stringify()).isEqualTo(pw.stringify());
+		try (Stream<Path> files = Files.list(tempDir)) {
+			assertThat(files.count()).isEqualTo(1);
+		}
+
+		pw.getConfiguration("Release|x64").propertyGroup.put("PlatformToolset", "v143");
+		pw.save(copy);
+		assertThat(new ProjectWrapper(copy).stringify()).isEqualTo(pw.stringify());
+		try (Stream<Path> files = Files.list(tempDir)) {
+			assertThat(files.count()).isEqualTo(1);
+		}
+	}
 }
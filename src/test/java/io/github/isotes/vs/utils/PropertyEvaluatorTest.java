@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2020 Robert Sauter
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.isotes.vs.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PropertyEvaluatorTest {
+
+	@Test
+	void expand() {
+		ProjectWrapper pw = TestUtils.projectWrapper(ConfigurationWrapperTest.LIB_VCXPROJ);
+		PropertyEvaluator evaluator = new PropertyEvaluator(pw, ConfigurationWrapperTest.CONFIG,
+				PropertyEvaluator.solutionProperties(VsSolutionTest.SLN));
+		String solutionDir = evaluator.get("SolutionDir");
+		assertThat(solutionDir).endsWith(File.separator);
+		assertThat(evaluator.get("CONFIGURATION")).isEqualTo("Release");
+		assertThat(evaluator.get("Platform")).isEqualTo("x64");
+		assertThat(evaluator.get("PlatformToolset")).isEqualTo("v140");
+		assertThat(evaluator.expand("$(ProjectName)-$(Undefined)-$(X.Trim())")).isEqualTo("Common--$(X.Trim())");
+		assertThat(evaluator.expand(Arrays.asList("$(Platform)", "a"))).containsExactly("x64", "a").inOrder();
+		assertThat(evaluator.isDefined("Undefined")).isFalse();
+
+		evaluator.put("BuildRoot", "$(SolutionDir)$(Platform)\\$(Configuration)\\");
+		evaluator.put("ObjDir", "$(BuildRoot)obj\\");
+		assertThat(evaluator.get("ObjDir")).isEqualTo(solutionDir + "x64\\Release\\obj\\");
+		assertThat(X.childElements(pw.getConfiguration(ConfigurationWrapperTest.CONFIG).propertyGroup.propertyGroup, "ObjDir")
+				.getLength()).isEqualTo(1);
+		evaluator.put("BuildRoot", "out\\");
+		assertThat(evaluator.get("ObjDir")).isEqualTo("out\\obj\\");
+
+		evaluator.put("RecursiveA", "$(RecursiveB)");
+		evaluator.put("RecursiveB", "x$(RecursiveA)");
+		IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> evaluator.get("RecursiveA"));
+		assertThat(e).hasMessageThat().contains("recursivea -> recursiveb -> recursivea");
+		evaluator.put("RecursiveB", "b");
+		assertThat(evaluator.get("RecursiveA")).isEqualTo("b");
+	}
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2020 Robert Sauter
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.isotes.vs.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SnapshotStoreTest {
+
+	@Test
+	void writeRead(@TempDir Path dir) throws Exception {
+		Path sln = TestUtils.copySolution(dir);
+		LoadedSolution loaded = new LoadedSolution(new VsSolution(sln));
+		Path storePath = dir.resolve("snapshots.bin");
+		SnapshotStore.write(storePath, loaded);
+
+		SnapshotStore store = new SnapshotStore(storePath);
+		SolutionSnapshot solution = store.solution(sln).get();
+		assertThat(solution.thaw().stringify()).isEqualTo(loaded.solution.stringify());
+		for (ProjectWrapper pw : loaded.projects.values()) {
+			ProjectSnapshot expected = pw.freeze();
+			ProjectSnapshot stored = store.project(pw.path).get();
+			assertThat(stored.configurations).containsExactlyElementsIn(expected.configurations).inOrder();
+			assertThat(stored.globals).containsExactlyEntriesIn(expected.globals).inOrder();
+			assertThat(stored.userMacros).containsExactlyEntriesIn(expected.userMacros).inOrder();
+			assertThat(stored.items).containsExactlyEntriesIn(expected.items).inOrder();
+			assertThat(stored.thaw().stringify()).isEqualTo(pw.stringify());
+		}
+
+		ProjectWrapper changed = loaded.projects.values().iterator().next();
+		// stored snapshots keep the file content they correspond to and can be stored again
+		SnapshotStore.write(storePath, store.loadSolution(sln), Collections.singletonList(store.loadProject(changed.path)));
+		store = new SnapshotStore(storePath);
+		assertThat(store.project(changed.path)).isPresent();
+		assertThrows(IllegalArgumentException.class,
+				() -> SnapshotStore.write(storePath, null, Collections.singletonList(changed.freeze())));
+
+		changed.getConfiguration("Release|x64").propertyGroup.put("PlatformToolset", "v142");
+		changed.save(changed.path);
+		assertThat(store.project(changed.path)).isEmpty();
+		assertThat(store.loadProject(changed.path).configuration("Release|x64").properties)
+				.containsEntry("PlatformToolset", "v142");
+		assertThat(new SnapshotStore(dir.resolve("missing.bin")).solution(sln)).isEmpty();
+	}
+}
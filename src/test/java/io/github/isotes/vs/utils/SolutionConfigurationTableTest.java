@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2020 Robert Sauter
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.isotes.vs.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+class SolutionConfigurationTableTest {
+
+	@Test
+	void readWrite() {
+		VsSolution solution = new VsSolution(VsSolutionTest.SLN);
+		String expected = solution.stringify();
+		SolutionConfigurationTable table = new SolutionConfigurationTable(solution);
+		assertThat(table.solutionConfigurations).isNotEmpty();
+		for (VsSolutionProject project : solution.projects) {
+			List<SolutionConfigurationTable.Mapping> mappings = table.byProject(project.guid.toLowerCase());
+			assertThat(mappings).hasSize(table.solutionConfigurations.size());
+			for (SolutionConfigurationTable.Mapping mapping : mappings) {
+				assertThat(table.get(project.guid, mapping.solutionConfiguration)).isSameInstanceAs(mapping);
+				assertThat(mapping.activeCfg).isNotNull();
+			}
+		}
+		table.write();
+		assertThat(solution.stringify()).isEqualTo(expected);
+	}
+
+	@Test
+	void modify() {
+		VsSolution solution = new VsSolution(VsSolutionTest.SLN);
+		SolutionConfigurationTable table = new SolutionConfigurationTable(solution);
+		VsSolutionProject pCommon = solution.projects.get(1);
+		String configuration = table.solutionConfigurations.get(0);
+		table.get(pCommon.guid, configuration).build = null;
+		table.solutionConfigurations.add("Profile|x64");
+		table.getOrAdd(pCommon.guid.toLowerCase(), "Profile|x64").set("Release|x64", true, false);
+		table.removeProject(solution.projects.get(0).guid);
+		table.write();
+
+		byte[] content = solution.stringify().getBytes(StandardCharsets.UTF_8);
+		SolutionConfigurationTable reread = new SolutionConfigurationTable(new VsSolution(VsSolutionTest.SLN, new ByteArrayInputStream(content)));
+		assertThat(reread.solutionConfigurations).contains("Profile|x64");
+		assertThat(reread.get(pCommon.guid, configuration).build).isNull();
+		SolutionConfigurationTable.Mapping profile = reread.get(pCommon.guid, "Profile|x64");
+		assertThat(profile.guid).isEqualTo(pCommon.guid);
+		assertThat(profile.activeCfg).isEqualTo("Release|x64");
+		assertThat(profile.build).isEqualTo("Release|x64");
+		assertThat(profile.deploy).isNull();
+		assertThat(reread.byProject(solution.projects.get(0).guid)).isEmpty();
+	}
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2020 Robert Sauter
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.isotes.vs.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SolutionSnapshotTest {
+
+	@Test
+	void freezeThaw() {
+		VsSolution solution = new VsSolution(VsSolutionTest.SLN);
+		SolutionSnapshot snapshot = solution.freeze();
+		assertThat(snapshot.projects).hasSize(solution.projects.size());
+		VsSolutionProject common = solution.byName("Common");
+		assertThat(snapshot.byGuid(common.guid.toLowerCase()).name).isEqualTo("Common");
+		assertThat(snapshot.byName("Common").dependencies()).isEqualTo(common.dependencies());
+		assertThrows(UnsupportedOperationException.class, () -> snapshot.projects.remove(0));
+
+		common.name = "Renamed";
+		assertThat(snapshot.byName("Common")).isNotNull();
+		SolutionSnapshot next = solution.freeze(snapshot);
+		for (int i = 0; i < next.projects.size(); i++) {
+			if (solution.projects.get(i) == common) {
+				assertThat(next.projects.get(i).name).isEqualTo("Renamed");
+			} else {
+				assertThat(next.projects.get(i)).isSameInstanceAs(snapshot.projects.get(i));
+			}
+		}
+		assertThat(next.globalSections).containsExactlyElementsIn(snapshot.globalSections).inOrder();
+
+		VsSolution thawed = next.thaw();
+		assertThat(thawed.stringify()).isEqualTo(solution.stringify());
+		thawed.byName("Renamed").name = "Again";
+		assertThat(next.byName("Renamed")).isNotNull();
+		assertThat(common.name).isEqualTo("Renamed");
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2020 Robert Sauter
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.isotes.vs.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.truth.Truth.assertThat;
+
+class SolutionWatcherTest {
+
+	/** @return the copy of the test solution and its projects in the directory */
+	@Test
+	void reloadChangedProject(@TempDir Path dir) throws Exception {
+		Path sln = TestUtils.copySolution(dir);
+		BlockingQueue<SolutionWatcher.Snapshot> updates = new LinkedBlockingQueue<>();
+		try (SolutionWatcher watcher = new SolutionWatcher(sln, 50, updates::add)) {
+			SolutionWatcher.Snapshot initial = watcher.snapshot();
+			assertThat(initial.version).isEqualTo(1);
+			assertThat(initial.failures).isEmpty();
+			assertThat(initial.projects).hasSize(4);
+
+			VsSolutionProject changed = initial.solution.projects.get(0);
+			ProjectWrapper pw = new ProjectWrapper(changed.path);
+			pw.getConfiguration("Release|x64").propertyGroup.put("PlatformToolset", "v142");
+			assertThat(pw.saveIfChanged(changed.path)).isTrue();
+
+			SolutionWatcher.Snapshot next = updates.poll(30, TimeUnit.SECONDS);
+			assertThat(next).isNotNull();
+			assertThat(watcher.snapshot()).isSameInstanceAs(next);
+			assertThat(next.version).isEqualTo(2);
+			assertThat(next.solution).isSameInstanceAs(initial.solution);
+			for (VsSolutionProject vsp : next.solution.projects) {
+				if (vsp == changed) {
+					assertThat(next.get(vsp)).isNotSameInstanceAs(initial.get(vsp));
+					assertThat(next.get(vsp).getConfiguration("Release|x64").propertyGroup.get("PlatformToolset")).isEqualTo("v142");
+				} else {
+					assertThat(next.get(vsp)).isSameInstanceAs(initial.get(vsp));
+				}
+			}
+		}
+	}
+
+	@Test
+	void brokenSolution(@TempDir Path dir) throws Exception {
+		Path sln = TestUtils.copySolution(dir);
+		byte[] content = Files.readAllBytes(sln);
+		BlockingQueue<SolutionWatcher.Snapshot> updates = new LinkedBlockingQueue<>();
+		try (SolutionWatcher watcher = new SolutionWatcher(sln, 200, updates::add)) {
+			SolutionWatcher.Snapshot initial = watcher.snapshot();
+			VsSolutionProject changed = initial.solution.projects.get(0);
+			Files.write(sln, "Project(\"".getBytes(StandardCharsets.UTF_8));
+			ProjectWrapper pw = new ProjectWrapper(changed.path);
+			pw.getConfiguration("Release|x64").propertyGroup.put("PlatformToolset", "v142");
+			assertThat(pw.saveIfChanged(changed.path)).isTrue();
+
+			// the project is reloaded although the solution cannot be parsed
+			SolutionWatcher.Snapshot next = updates.poll(30, TimeUnit.SECONDS);
+			assertThat(next).isNotNull();
+			assertThat(next.solution).isSameInstanceAs(initial.solution);
+			assertThat(next.get(changed).getConfiguration("Release|x64").propertyGroup.get("PlatformToolset")).isEqualTo("v142");
+
+			Files.write(sln, content);
+			SolutionWatcher.Snapshot fixed = updates.poll(30, TimeUnit.SECONDS);
+			assertThat(fixed).isNotNull();
+			assertThat(fixed.solution).isNotSameInstanceAs(initial.solution);
+			assertThat(fixed.projects).hasSize(4);
+		}
+	}
+}
@@ -5,7 +5,9 @@
 
 package io.github.isotes.vs.utils;
 
+import java.io.IOException;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
@@ -29,4 +31,15 @@ public class TestUtils {
 	public static ProjectWrapper projectWrapper(String relative) {
 		return new ProjectWrapper(file(relative));
 	}
+
+	/** Copy the test solution and its projects keeping their relative paths, e.g., to modify them */
+	public static Path copySolution(Path dir) throws IOException {
+		Path sln = Files.copy(VsSolutionTest.SLN, dir.resolve(VsSolutionTest.SLN.getFileName()));
+		for (VsSolutionProject vsp : new VsSolution(VsSolutionTest.SLN).projects) {
+			Path target = dir.resolve(VsSolutionTest.SLN.getParent().relativize(vsp.path));
+			Files.createDirectories(target.getParent());
+			Files.copy(vsp.path, target);
+		}
+		return sln;
+	}
 }
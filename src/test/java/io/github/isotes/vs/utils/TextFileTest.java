@@ -6,8 +6,12 @@
 package io.github.isotes.vs.utils;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 import static com.google.common.truth.Truth.assertThat;
 
@@ -36,4 +40,39 @@ class TextFileTest {
 		assertThat(textFile.newline).isEqualTo("\n");
 		assertThat(textFile.hasBom).isEqualTo(false);
 	}
+
+	@Test
+	void loadEmpty(@TempDir Path dir) throws IOException {
+		Path empty = Files.write(dir.resolve("empty.txt"), new byte[0]);
+		TextFile textFile = new TextFile(empty);
+		assertThat(textFile.content).isEmpty();
+		assertThat(textFile.newline).isEqualTo("\n");
+		assertThat(textFile.hasBom).isEqualTo(false);
+		MappedTextFile mapped = new MappedTextFile(empty, StandardCharsets.UTF_8, 0);
+		assertThat(mapped.content.length()).isEqualTo(0);
+		assertThat(mapped.newline).isEqualTo("\n");
+		assertThat(mapped.hasBom).isEqualTo(false);
+	}
+
+	@Test
+	void loadMapped() {
+		for (String name : new String[]{"text-crlf-hasbom.txt", "text-lf-nobom.txt"}) {
+			TextFile textFile = new TextFile(TestUtils.resource(name));
+			for (long mapThreshold : new long[]{0, MappedTextFile.DEFAULT_MAP_THRESHOLD}) {
+				MappedTextFile mapped = new MappedTextFile(textFile.path, StandardCharsets.UTF_8, mapThreshold);
+				assertThat(mapped.toString()).isEqualTo(textFile.content);
+				assertThat(mapped.newline).isEqualTo(textFile.newline);
+				assertThat(mapped.hasBom).isEqualTo(textFile.hasBom);
+			}
+		}
+	}
+
+	@Test
+	void parseMapped() {
+		Path vcxproj = TestUtils.file("Hilo2015/Common/Common.vcxproj");
+		ProjectWrapper mapped = new ProjectWrapper(new MappedTextFile(vcxproj, StandardCharsets.UTF_8, 0));
+		assertThat(mapped.stringify()).isEqualTo(new ProjectWrapper(vcxproj).stringify());
+		VsSolution solution = new VsSolution(new MappedTextFile(VsSolutionTest.SLN));
+		assertThat(solution.stringify()).isEqualTo(new VsSolution(VsSolutionTest.SLN).stringify());
+	}
 }
@@ -6,9 +6,16 @@
 package io.github.isotes.vs.utils;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
 
 import static com.google.common.truth.Truth.assertThat;
 
@@ -22,6 +29,43 @@ class VsSolutionTest {
 		assertThat(solution.stringify()).isEqualTo(expected);
 	}
 
+	@Test
+	void readStream() throws Exception {
+		String expected = new String(Files.readAllBytes(SLN));
+		try (InputStream in = Files.newInputStream(SLN)) {
+			VsSolution solution = new VsSolution(SLN, in);
+			assertThat(solution.projects).hasSize(4);
+			assertThat(solution.stringify()).isEqualTo(expected);
+		}
+	}
+
+	@Test
+	void update(@TempDir Path dir) throws Exception {
+		Path sln = Files.copy(SLN, dir.resolve("Hilo.sln"));
+		VsSolution previous = new VsSolution(sln);
+		List<VsSolutionProject> projects = new ArrayList<>(previous.projects);
+		List<VsSolutionSection> sections = new ArrayList<>(previous.globalSections);
+		String content = new String(Files.readAllBytes(sln), StandardCharsets.UTF_8)
+				.replaceFirst(previous.newline, previous.newline + "# comment" + previous.newline)
+				.replaceFirst("\"" + projects.get(1).name + "\"", "\"Renamed\"");
+		Files.write(sln, content.getBytes(StandardCharsets.UTF_8));
+
+		VsSolution updated = new VsSolution(previous, sln);
+		VsSolution expected = new VsSolution(sln);
+		assertThat(updated.stringify()).isEqualTo(expected.stringify());
+		assertThat(updated.projects.get(0)).isSameInstanceAs(projects.get(0));
+		assertThat(updated.projects.get(1)).isNotSameInstanceAs(projects.get(1));
+		assertThat(updated.projects.get(1).name).isEqualTo("Renamed");
+		assertThat(updated.globalSections).containsExactlyElementsIn(sections).inOrder();
+		for (int i = 0; i < expected.projects.size(); i++) {
+			assertThat(updated.projects.get(i).firstLine).isEqualTo(expected.projects.get(i).firstLine);
+			assertThat(updated.projects.get(i).path).isEqualTo(expected.projects.get(i).path);
+		}
+		for (int i = 0; i < expected.globalSections.size(); i++) {
+			assertThat(updated.globalSections.get(i).firstLine).isEqualTo(expected.globalSections.get(i).firstLine);
+		}
+	}
+
 	@Test
 	void accessors() throws Exception {
 		VsSolution solution = new VsSolution(SLN);
@@ -41,6 +85,32 @@ class VsSolutionTest {
 		assertThat(pRegistrationHelper.guid).isEqualTo("{2851BF7E-A889-41A1-9FD1-8BCB09248EEF}");
 	}
 
+	@Test
+	void lookups() {
+		VsSolution solution = new VsSolution(SLN);
+		VsSolutionProject pCommon = solution.projects.get(1);
+		assertThat(solution.byGuid(pCommon.guid.toLowerCase())).isSameInstanceAs(pCommon);
+		assertThat(solution.byName("Common")).isSameInstanceAs(pCommon);
+		assertThat(solution.globalSection("SolutionConfigurationPlatforms", "preSolution").isPresent()).isTrue();
+
+		solution.projects.remove(pCommon);
+		assertThat(solution.byGuid(pCommon.guid)).isNull();
+		assertThat(solution.byName("Common")).isNull();
+		solution.projects.add(pCommon);
+		assertThat(solution.byGuid(pCommon.guid)).isSameInstanceAs(pCommon);
+
+		pCommon.name = "Renamed";
+		assertThat(solution.byName("Common")).isNull();
+		solution.reindex();
+		assertThat(solution.byName("Renamed")).isSameInstanceAs(pCommon);
+		String guid = pCommon.guid;
+		pCommon.guid = "{00000000-0000-0000-0000-000000000001}";
+		solution.reindex();
+		assertThat(solution.byGuid(pCommon.guid)).isSameInstanceAs(pCommon);
+		assertThat(solution.byGuid(guid)).isNull();
+		assertThat(solution.byGuid(null)).isNull();
+	}
+
 	// used as the introductory example in the Readme
 	@Test
 	void projects() throws Exception {
@@ -59,4 +129,26 @@ class VsSolutionTest {
 //			project.save(project.path);
 		}
 	}
+
+	@Test
+	void saveIfChanged(@TempDir Path dir) throws Exception {
+		Path copy = Files.copy(SLN, dir.resolve("Hilo.sln"));
+		FileTime modified = FileTime.fromMillis(0);
+		Files.setLastModifiedTime(copy, modified);
+
+		VsSolution solution = new VsSolution(copy);
+		assertThat(solution.saveIfChanged(copy)).isFalse();
+		assertThat(Files.getLastModifiedTime(copy)).isEqualTo(modified);
+
+		solution.projects.get(0).name = "Renamed";
+		assertThat(solution.saveIfChanged(copy)).isTrue();
+		assertThat(new VsSolution(copy).stringify()).isEqualTo(solution.stringify());
+
+		solution.projects.get(0).name = "Saved";
+		solution.save(copy);
+		assertThat(new VsSolution(copy).projects.get(0).name).isEqualTo("Saved");
+		try (Stream<Path> files = Files.list(dir)) {
+			assertThat(files.count()).isEqualTo(1);
+		}
+	}
 }